@@ -0,0 +1,82 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.dto.CacheStatsDto;
+import com.ecommerce.dto.CategoryDto;
+import com.ecommerce.dto.ProductDto;
+import com.ecommerce.event.CategoryChangedEvent;
+import com.ecommerce.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Component
+public class CatalogCache {
+
+    private static final String ALL_CATEGORIES = "all";
+
+    private final CoalescingCache<Long, ProductDto> products;
+    private final CoalescingCache<Long, List<ProductDto>> productsByCategory;
+    private final CoalescingCache<Long, CategoryDto> categories;
+    private final CoalescingCache<String, List<CategoryDto>> categoryLists;
+
+    public CatalogCache(
+            @Value("${catalog.cache.maximum-size:10000}") long maximumSize,
+            @Value("${catalog.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        long secondarySize = Math.max(1, maximumSize / 10);
+        this.products = new CoalescingCache<>("products", maximumSize, expireAfterWrite);
+        this.productsByCategory = new CoalescingCache<>("productsByCategory", secondarySize, expireAfterWrite);
+        this.categories = new CoalescingCache<>("categories", secondarySize, expireAfterWrite);
+        this.categoryLists = new CoalescingCache<>("categoryLists", 1, expireAfterWrite);
+    }
+
+    public ProductDto getProduct(Long id, Function<Long, ProductDto> loader) {
+        return products.get(id, loader);
+    }
+
+    public Map<Long, ProductDto> getProducts(Collection<Long> ids, Function<List<Long>, Map<Long, ProductDto>> bulkLoader) {
+        return products.getAll(ids, bulkLoader);
+    }
+
+    public List<ProductDto> getProductsByCategory(Long categoryId, Function<Long, List<ProductDto>> loader) {
+        return productsByCategory.get(categoryId, key -> List.copyOf(loader.apply(key)));
+    }
+
+    public CategoryDto getCategory(Long id, Function<Long, CategoryDto> loader) {
+        return categories.get(id, loader);
+    }
+
+    public List<CategoryDto> getAllCategories(Supplier<List<CategoryDto>> loader) {
+        return categoryLists.get(ALL_CATEGORIES, key -> List.copyOf(loader.get()));
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        products.invalidate(event.getProductId());
+        productsByCategory.invalidate(event.getCategoryId());
+        productsByCategory.invalidate(event.getPreviousCategoryId());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        categories.invalidate(event.getCategoryId());
+        categoryLists.invalidateAll();
+        productsByCategory.invalidate(event.getCategoryId());
+        // Cached products embed the category name
+        products.invalidateAll(event.getProductIds());
+    }
+
+    public List<CacheStatsDto> stats() {
+        return List.of(products.stats(), productsByCategory.stats(), categories.stats(), categoryLists.stats());
+    }
+}
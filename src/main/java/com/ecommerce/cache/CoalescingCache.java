@@ -0,0 +1,94 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.dto.CacheStatsDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// A bounded Caffeine cache whose misses go through a single-flight loader
+class CoalescingCache<K, V> {
+
+    private final String name;
+    private final Cache<K, V> cache;
+    private final SingleFlight<K, V> loads = new SingleFlight<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    CoalescingCache(String name, long maximumSize, Duration expireAfterWrite) {
+        this.name = name;
+        // Caffeine evicts by W-TinyLFU once the size bound is reached
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    V get(K key, Function<? super K, ? extends V> loader) {
+        V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        return loads.execute(key, loader, value -> cache.put(key, value));
+    }
+
+    // Hits are served from the cache and all misses are resolved by one bulk load
+    Map<K, V> getAll(Collection<K> keys, Function<List<K>, Map<K, V>> bulkLoader) {
+        Map<K, V> found = new HashMap<>(cache.getAllPresent(keys));
+        List<K> misses = new ArrayList<>();
+        for (K key : keys) {
+            if (!found.containsKey(key)) {
+                misses.add(key);
+            }
+        }
+        if (misses.isEmpty()) {
+            return found;
+        }
+
+        long generation = invalidations.get();
+        Map<K, V> loaded = bulkLoader.apply(misses);
+        found.putAll(loaded);
+        // A bulk load is not tied to per-key flights, so skip publishing if anything was invalidated meanwhile
+        if (invalidations.get() == generation) {
+            cache.putAll(loaded);
+        }
+        return found;
+    }
+
+    // Forget the in-flight load first so a load that read the old row is never published
+    void invalidate(K key) {
+        if (key == null) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        loads.forget(key);
+        cache.invalidate(key);
+    }
+
+    void invalidateAll(Iterable<? extends K> keys) {
+        keys.forEach(this::invalidate);
+    }
+
+    void invalidateAll() {
+        invalidations.incrementAndGet();
+        loads.forgetAll();
+        cache.invalidateAll();
+    }
+
+    CacheStatsDto stats() {
+        CacheStats stats = cache.stats();
+        long requests = loads.requestCount();
+        long coalesced = requests - loads.loadCount();
+        return new CacheStatsDto(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), loads.loadCount(), coalesced,
+                requests == 0 ? 0.0 : (double) coalesced / requests);
+    }
+}
@@ -0,0 +1,221 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.dto.CacheStatsDto;
+import com.ecommerce.event.CategoryChangedEvent;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.event.SuggestionsRefreshedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+// Serialized catalog responses, tagged with the products and categories they contain so writes purge exactly them.
+// Stock changes only reach the responses that render stock, so checkouts leave suggestions and sparse lists cached
+@Component
+public class ResponseCache {
+
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final int GENERATION_STRIPES = 64;
+    private static final String PRODUCT_LISTS = "products";
+    private static final String STOCKLESS_PRODUCT_LISTS = "products:stockless";
+    private static final String SUGGESTIONS = "suggest";
+    private static final String SUGGEST_PATH = "/api/products/suggest";
+    private static final String STOCK_FIELD = "stockQuantity";
+    private static final Pattern PRODUCT_PATH = Pattern.compile("^/api/products/(\\d+)$");
+    private static final Pattern CATEGORY_PATH = Pattern.compile("^/api/products/category/(\\d+)$");
+
+    private final Cache<String, CachedResponse> responses;
+    private final Map<String, Set<String>> keysByTag = new ConcurrentHashMap<>();
+    // Purge counts striped by tag, so a purge only holds back responses being rendered under tags in its stripe
+    private final AtomicLongArray purges = new AtomicLongArray(GENERATION_STRIPES);
+
+    public ResponseCache(
+            @Value("${catalog.response-cache.maximum-weight:64MB}") DataSize maximumWeight,
+            @Value("${catalog.response-cache.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight.toBytes())
+                .weigher((String key, CachedResponse response) -> response.weight())
+                .expireAfterWrite(expireAfterWrite)
+                // Eviction listeners run atomically with the eviction, so they cannot untag a newer entry for the key
+                .evictionListener((String key, CachedResponse response, RemovalCause cause) -> {
+                    if (key != null && response != null) {
+                        untag(key, response.tag);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public CachedResponse get(String key) {
+        return responses.getIfPresent(key);
+    }
+
+    public long generation(String tag) {
+        return purges.get(stripe(tag));
+    }
+
+    // Skipped when a purge happened while the response was rendered, since it may embed the purged state
+    public void put(String key, String tag, String contentType, String eTag, byte[] body, long generation) {
+        if (generation(tag) != generation) {
+            return;
+        }
+        keysByTag.computeIfAbsent(tag, ignored -> ConcurrentHashMap.newKeySet()).add(key);
+        responses.put(key, new CachedResponse(tag, contentType, eTag, body, body.length >= GZIP_MIN_BYTES ? gzip(body) : null));
+        if (generation(tag) != generation) {
+            responses.invalidate(key);
+        }
+    }
+
+    // fields are the request's "fields=" values; lists selecting no stock are left alone by stock changes
+    public String tagFor(String path, String[] fields) {
+        Matcher product = PRODUCT_PATH.matcher(path);
+        if (product.matches()) {
+            return "product:" + product.group(1);
+        }
+        Matcher category = CATEGORY_PATH.matcher(path);
+        if (category.matches()) {
+            return "category:" + category.group(1);
+        }
+        if (path.equals(SUGGEST_PATH)) {
+            return SUGGESTIONS;
+        }
+        return rendersStock(fields) ? PRODUCT_LISTS : STOCKLESS_PRODUCT_LISTS;
+    }
+
+    // Purges once the change feed has moved to the new version; a response rendered between a purge and the version
+    // bump would pair the new body with the old ETag and stay cached under it
+    @Order(Ordered.HIGHEST_PRECEDENCE + 2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        purge(PRODUCT_LISTS);
+        purge("product:" + event.getProductId());
+        purge("category:" + event.getCategoryId());
+        if (event.getType() == ProductChangedEvent.ChangeType.STOCK_CHANGED) {
+            return;
+        }
+        purge(STOCKLESS_PRODUCT_LISTS);
+        purge(SUGGESTIONS);
+        purge("category:" + event.getPreviousCategoryId());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE + 2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        purge(PRODUCT_LISTS);
+        purge(STOCKLESS_PRODUCT_LISTS);
+        purge("category:" + event.getCategoryId());
+        // Cached products embed the category name
+        event.getProductIds().forEach(productId -> purge("product:" + productId));
+    }
+
+    // Popularity refreshes reorder suggestions without changing any product
+    @EventListener
+    public void onSuggestionsRefreshed(SuggestionsRefreshedEvent event) {
+        purge(SUGGESTIONS);
+    }
+
+    public CacheStatsDto stats() {
+        CacheStats stats = responses.stats();
+        return new CacheStatsDto("responses", responses.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), stats.missCount(), 0, 0.0);
+    }
+
+    private void purge(String tag) {
+        purges.incrementAndGet(stripe(tag));
+        Set<String> keys = keysByTag.remove(tag);
+        if (keys != null) {
+            responses.invalidateAll(new ArrayList<>(keys));
+        }
+    }
+
+    private void untag(String key, String tag) {
+        keysByTag.computeIfPresent(tag, (ignored, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static int stripe(String tag) {
+        return Math.floorMod(tag.hashCode(), GENERATION_STRIPES);
+    }
+
+    private static boolean rendersStock(String[] fields) {
+        if (fields == null) {
+            return true;
+        }
+        for (String value : fields) {
+            for (String field : value.split(",")) {
+                if (field.trim().equals(STOCK_FIELD)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    public static final class CachedResponse {
+        private final String tag;
+        private final String contentType;
+        private final String eTag;
+        private final byte[] body;
+        private final byte[] gzippedBody;
+
+        private CachedResponse(String tag, String contentType, String eTag, byte[] body, byte[] gzippedBody) {
+            this.tag = tag;
+            this.contentType = contentType;
+            this.eTag = eTag;
+            this.body = body;
+            this.gzippedBody = gzippedBody;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public byte[] getGzippedBody() {
+            return gzippedBody;
+        }
+
+        private int weight() {
+            return body.length + (gzippedBody != null ? gzippedBody.length : 0);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.ecommerce.cache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+
+// Serves anonymous catalog GETs straight from pre-serialized bytes, bypassing the controllers on a hit
+@Component
+@RequiredArgsConstructor
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private static final String CACHED_PATH_PREFIX = "/api/products";
+    private static final String STREAM_PATH = "/api/products/stream";
+
+    private final ResponseCache responseCache;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !HttpMethod.GET.matches(request.getMethod())
+                || !path.startsWith(CACHED_PATH_PREFIX)
+                || path.equals(STREAM_PATH)
+                || request.getHeader(HttpHeaders.AUTHORIZATION) != null
+                || !acceptsJson(request.getHeader(HttpHeaders.ACCEPT));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI();
+        String key = request.getQueryString() == null ? path : path + '?' + request.getQueryString();
+
+        ResponseCache.CachedResponse cached = responseCache.get(key);
+        if (cached != null) {
+            writeCached(request, response, cached);
+            return;
+        }
+
+        String tag = responseCache.tagFor(path, request.getParameterValues("fields"));
+        long generation = responseCache.generation(tag);
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+            String contentType = wrapper.getContentType();
+            if (wrapper.getStatus() == HttpServletResponse.SC_OK && contentType != null
+                    && MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType))) {
+                responseCache.put(key, tag, contentType, wrapper.getHeader(HttpHeaders.ETAG),
+                        wrapper.getContentAsByteArray(), generation);
+            }
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void writeCached(HttpServletRequest request, HttpServletResponse response,
+                             ResponseCache.CachedResponse cached) throws IOException {
+        if (cached.getETag() != null) {
+            // Catalog ETags name the encoding picked from Accept
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            response.setHeader(HttpHeaders.ETAG, cached.getETag());
+            if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), cached.getETag())) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        byte[] body = cached.getBody();
+        if (cached.getGzippedBody() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                body = cached.getGzippedBody();
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(cached.getContentType());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static boolean acceptsJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        boolean json = false;
+        for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+            // A type listed with q=0 is refused, not accepted
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            // Only JSON is cached, so callers accepting the binary format always reach the controllers
+            if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(mediaType)) {
+                return false;
+            }
+            json |= mediaType.includes(MediaType.APPLICATION_JSON);
+        }
+        return json;
+    }
+
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
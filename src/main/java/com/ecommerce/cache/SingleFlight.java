@@ -0,0 +1,75 @@
+package com.ecommerce.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    // Concurrent callers for the same key share one load; the leader publishes the result
+    // unless the key was forgotten (invalidated) while the load was running
+    public V execute(K key, Function<? super K, ? extends V> loader, Consumer<? super V> publisher) {
+        requests.increment();
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        loads.increment();
+        try {
+            V value = loader.apply(key);
+            inFlight.computeIfPresent(key, (k, current) -> {
+                if (current != future) {
+                    return current;
+                }
+                publisher.accept(value);
+                return null;
+            });
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    public long loadCount() {
+        return loads.sum();
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
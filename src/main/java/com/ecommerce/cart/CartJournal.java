@@ -0,0 +1,280 @@
+package com.ecommerce.cart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Append-only log of cart mutations, split into numbered segments. Records carry absolute quantities, so replaying
+// a record that already reached the database is harmless. Appends are group-committed: records are buffered under a
+// short lock, and whichever appender reaches the file first writes everything buffered so far with one flush
+@Slf4j
+class CartJournal {
+
+    private static final String SEGMENT_PREFIX = "cart-journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    static final byte OP_SET = 1;
+    static final byte OP_CLEAR = 2;
+
+    private final Path directory;
+    private final boolean fsync;
+
+    // Guards the segment file and is always taken before the monitor, which only guards the buffer
+    private final Object fileLock = new Object();
+    private long segment;
+    private FileOutputStream file;
+    private DataOutputStream out;
+
+    private Batch pending = new Batch();
+
+    CartJournal(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create cart journal directory " + directory, e);
+        }
+    }
+
+    // Replays every existing segment in order; the caller persists the result and then calls open()
+    void replay(Consumer<Record> consumer) {
+        for (Path path : segments()) {
+            int records = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                while (true) {
+                    Record record = read(in);
+                    if (record == null) {
+                        break;
+                    }
+                    consumer.accept(record);
+                    records++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read cart journal segment " + path, e);
+            }
+            log.info("Replayed {} cart journal records from {}", records, path.getFileName());
+        }
+    }
+
+    void open() {
+        synchronized (fileLock) {
+            List<Path> existing = segments();
+            segment = existing.isEmpty() ? 0 : sequenceOf(existing.get(existing.size() - 1));
+            openNextSegment();
+        }
+    }
+
+    // Returns once the record is in the file, and throws if the write it was part of failed
+    void appendSet(String username, Long productId, int quantity) {
+        Batch batch;
+        synchronized (this) {
+            batch = pending;
+            try {
+                batch.out.writeByte(OP_SET);
+                batch.out.writeUTF(username);
+                batch.out.writeLong(productId);
+                batch.out.writeInt(quantity);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot append to cart journal", e);
+            }
+        }
+        commit(batch);
+    }
+
+    void appendClear(String username) {
+        Batch batch;
+        synchronized (this) {
+            batch = pending;
+            try {
+                batch.out.writeByte(OP_CLEAR);
+                batch.out.writeUTF(username);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot append to cart journal", e);
+            }
+        }
+        commit(batch);
+    }
+
+    // Seals the current segment and returns its sequence number; later records go to a fresh segment
+    long rotate() {
+        synchronized (fileLock) {
+            writePending();
+            long sealed = segment;
+            closeCurrent();
+            openNextSegment();
+            return sealed;
+        }
+    }
+
+    void deleteSegmentsUpTo(long sequence) {
+        for (Path path : segments()) {
+            if (sequenceOf(path) <= sequence) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Cannot delete cart journal segment {}", path, e);
+                }
+            }
+        }
+    }
+
+    void close() {
+        synchronized (fileLock) {
+            if (out != null) {
+                writePending();
+            }
+            closeCurrent();
+        }
+    }
+
+    // Appenders queued behind another one's write usually find their records already written by it
+    private void commit(Batch batch) {
+        synchronized (fileLock) {
+            if (!batch.done) {
+                writePending();
+            }
+        }
+        if (batch.failure != null) {
+            throw new UncheckedIOException("Cannot append to cart journal", batch.failure);
+        }
+    }
+
+    // Flushed to the OS before any appender returns, so a process crash loses nothing; fsync also covers power loss.
+    // A batch that fails is dropped, never retried: its appenders report the failure and leave their carts unchanged,
+    // so a later replay must not apply it either
+    private void writePending() {
+        Batch batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new Batch();
+        }
+        if (batch.bytes.size() == 0) {
+            batch.done = true;
+            return;
+        }
+        long mark = -1;
+        try {
+            mark = file.getChannel().size();
+            batch.bytes.writeTo(out);
+            out.flush();
+            if (fsync) {
+                file.getChannel().force(false);
+            }
+        } catch (IOException e) {
+            batch.failure = e;
+            discardPartialWrite(mark);
+        } finally {
+            batch.done = true;
+        }
+    }
+
+    // Cuts the segment back to where the failed batch began, and leaves its unflushed bytes behind with the old buffer
+    private void discardPartialWrite(long mark) {
+        out = new DataOutputStream(new BufferedOutputStream(file));
+        if (mark < 0) {
+            return;
+        }
+        try {
+            file.getChannel().truncate(mark);
+        } catch (IOException e) {
+            log.error("Cannot truncate cart journal segment {} after a failed write", segment, e);
+        }
+    }
+
+    private void openNextSegment() {
+        segment++;
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%019d", segment) + SEGMENT_SUFFIX);
+        try {
+            file = new FileOutputStream(path.toFile(), true);
+            out = new DataOutputStream(new BufferedOutputStream(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open cart journal segment " + path, e);
+        }
+    }
+
+    private void closeCurrent() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("Cannot close cart journal segment {}", segment, e);
+        }
+        out = null;
+        file = null;
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>(files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .toList());
+            segments.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+            return segments;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list cart journal directory " + directory, e);
+        }
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // A record cut short by a crash ends the segment
+    private static Record read(DataInputStream in) throws IOException {
+        int op = in.read();
+        if (op < 0) {
+            return null;
+        }
+        try {
+            String username = in.readUTF();
+            if (op == OP_CLEAR) {
+                return new Record((byte) op, username, null, 0);
+            }
+            return new Record((byte) op, username, in.readLong(), in.readInt());
+        } catch (EOFException e) {
+            log.warn("Ignoring truncated cart journal record");
+            return null;
+        }
+    }
+
+    // Records appended between two writes; done and failure are only touched under fileLock
+    private static final class Batch {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private boolean done;
+        private IOException failure;
+    }
+
+    static final class Record {
+        final byte op;
+        final String username;
+        final Long productId;
+        final int quantity;
+
+        private Record(byte op, String username, Long productId, int quantity) {
+            this.op = op;
+            this.username = username;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cache.SingleFlight;
+import com.ecommerce.dto.ProductDto;
+import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.model.Cart;
+import com.ecommerce.model.CartItem;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.User;
+import com.ecommerce.repository.CartRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.service.ProductService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Carts live in memory, one lock per user, and every mutation is journaled before it is applied. A scheduled
+// write-behind flush persists the dirty carts in batches and then drops the journal segments it has covered
+@Component
+@Slf4j
+public class CartStore {
+
+    private static final int FLUSH_BATCH_SIZE = 100;
+    private static final int PRICE_LOOKUP_SIZE = 500;
+
+    private final CartRepository cartRepository;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final TransactionTemplate transactionTemplate;
+    private final CartJournal journal;
+    private final Duration idleTimeout;
+
+    private final Map<String, CartState> states = new ConcurrentHashMap<>();
+    private final SingleFlight<String, CartState> loads = new SingleFlight<>();
+    private final Object flushLock = new Object();
+
+    public CartStore(
+            CartRepository cartRepository,
+            UserRepository userRepository,
+            ProductRepository productRepository,
+            ProductService productService,
+            TransactionTemplate transactionTemplate,
+            @Value("${cart.journal.directory:data/cart-journal}") Path journalDirectory,
+            @Value("${cart.journal.fsync:false}") boolean fsync,
+            @Value("${cart.idle-timeout:30m}") Duration idleTimeout) {
+        this.cartRepository = cartRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.transactionTemplate = transactionTemplate;
+        this.journal = new CartJournal(journalDirectory, fsync);
+        this.idleTimeout = idleTimeout;
+    }
+
+    // Mutations journaled by a previous process are applied on top of the persisted carts and flushed before any
+    // request is served
+    @PostConstruct
+    void recover() {
+        journal.replay(record -> {
+            CartState state;
+            try {
+                state = stateFor(record.username);
+            } catch (ResourceNotFoundException e) {
+                log.warn("Dropping journaled cart mutation for unknown user {}", record.username);
+                return;
+            }
+            if (record.op == CartJournal.OP_CLEAR) {
+                state.clear();
+            } else {
+                state.put(record.productId, record.quantity);
+            }
+            state.dirty = true;
+        });
+        journal.open();
+        flush();
+    }
+
+    public CartView view(String username) {
+        return edit(username, editor -> {
+        });
+    }
+
+    // Applies the edits atomically with respect to other requests for the same user
+    public CartView edit(String username, Consumer<CartEditor> edits) {
+        while (true) {
+            CartState state = stateFor(username);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                state.lastAccess = System.currentTimeMillis();
+                edits.accept(new CartEditor(state));
+                return state.view();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.flush-interval-ms:2000}")
+    public void flush() {
+        synchronized (flushLock) {
+            long sealedSegment = journal.rotate();
+
+            // Every record in the sealed segments belongs to a cart that is dirty now, so the snapshots cover them
+            List<CartSnapshot> snapshots = new ArrayList<>();
+            for (CartState state : states.values()) {
+                synchronized (state) {
+                    if (state.dirty && !state.evicted) {
+                        snapshots.add(new CartSnapshot(state, new LinkedHashMap<>(state.quantities)));
+                        state.dirty = false;
+                    }
+                }
+            }
+
+            boolean failed = false;
+            for (int from = 0; from < snapshots.size(); from += FLUSH_BATCH_SIZE) {
+                List<CartSnapshot> batch = snapshots.subList(from, Math.min(from + FLUSH_BATCH_SIZE, snapshots.size()));
+                try {
+                    write(batch);
+                } catch (RuntimeException e) {
+                    log.error("Cart flush failed for {} carts, retrying on the next run", batch.size(), e);
+                    batch.forEach(snapshot -> {
+                        synchronized (snapshot.state) {
+                            snapshot.state.dirty = true;
+                        }
+                    });
+                    failed = true;
+                }
+            }
+            if (!failed) {
+                journal.deleteSegmentsUpTo(sealedSegment);
+            }
+            if (!snapshots.isEmpty()) {
+                log.debug("Flushed {} carts", snapshots.size());
+            }
+            evictIdle();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+        journal.close();
+    }
+
+    private CartState stateFor(String username) {
+        while (true) {
+            CartState state = states.get(username);
+            if (state != null) {
+                return state;
+            }
+            loads.execute(username, this::load, loaded -> states.putIfAbsent(username, loaded));
+        }
+    }
+
+    // A single projection query for an existing cart; the user is only looked up to create a missing one
+    private CartState load(String username) {
+        List<CartRepository.CartLineRow> rows = cartRepository.findLineRowsByUsername(username);
+        if (rows.isEmpty()) {
+            return transactionTemplate.execute(status -> {
+                User user = userRepository.findByUsername(username)
+                        .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+                Cart cart = cartRepository.findByUser(user)
+                        .orElseGet(() -> {
+                            Cart newCart = new Cart();
+                            newCart.setUser(user);
+                            newCart.setTotalPrice(BigDecimal.ZERO);
+                            return cartRepository.save(newCart);
+                        });
+                return new CartState(username, cart.getId());
+            });
+        }
+
+        CartState state = new CartState(username, rows.get(0).getCartId());
+        for (CartRepository.CartLineRow row : rows) {
+            if (row.getItemId() != null) {
+                state.quantities.put(row.getProductId(), row.getQuantity());
+                state.itemIds.put(row.getProductId(), row.getItemId());
+            }
+        }
+        return state;
+    }
+
+    private void write(List<CartSnapshot> batch) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        batch.forEach(snapshot -> productIds.addAll(snapshot.quantities.keySet()));
+        Map<Long, BigDecimal> prices = prices(new ArrayList<>(productIds));
+
+        Map<CartSnapshot, Cart> written = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Cart> carts = new HashMap<>();
+            List<Long> cartIds = batch.stream().map(snapshot -> snapshot.state.cartId).toList();
+            for (Cart cart : cartRepository.findWithItemsByIdIn(cartIds)) {
+                carts.put(cart.getId(), cart);
+            }
+            // Products of lines new since the last flush, loaded with one query for the whole batch
+            Set<Long> added = new HashSet<>();
+            for (CartSnapshot snapshot : batch) {
+                Cart cart = carts.get(snapshot.state.cartId);
+                if (cart != null) {
+                    snapshot.quantities.keySet().stream()
+                            .filter(productId -> prices.containsKey(productId) && cart.getItem(productId) == null)
+                            .forEach(added::add);
+                }
+            }
+            Map<Long, Product> products = new HashMap<>();
+            productRepository.findAllById(added).forEach(product -> products.put(product.getId(), product));
+
+            for (CartSnapshot snapshot : batch) {
+                Cart cart = carts.get(snapshot.state.cartId);
+                if (cart == null) {
+                    log.warn("Cart {} no longer exists, dropping its in-memory changes", snapshot.state.cartId);
+                    continue;
+                }
+                apply(cart, snapshot.quantities, prices, products);
+                written.put(snapshot, cart);
+            }
+        });
+
+        // Item ids are assigned by the insert, so lines added before this flush only get theirs now. Lines removed
+        // while the batch was being written keep none
+        written.forEach((snapshot, cart) -> {
+            synchronized (snapshot.state) {
+                for (CartItem item : cart.getItems()) {
+                    if (snapshot.state.quantities.containsKey(item.getProduct().getId())) {
+                        snapshot.state.itemIds.put(item.getProduct().getId(), item.getId());
+                    }
+                }
+            }
+        });
+    }
+
+    // Goes through the cart's product index, which keeps the total in step line by line. Lines for products deleted
+    // since they were added are not persisted
+    private void apply(Cart cart, Map<Long, Integer> quantities, Map<Long, BigDecimal> prices,
+                       Map<Long, Product> products) {
+        List<Long> removed = new ArrayList<>();
+        for (CartItem item : cart.getItems()) {
+            Long productId = item.getProduct().getId();
+            if (!quantities.containsKey(productId) || !prices.containsKey(productId)) {
+                removed.add(productId);
+            }
+        }
+        removed.forEach(cart::removeItem);
+
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            if (cart.getItem(line.getKey()) != null) {
+                cart.updateItemQuantity(line.getKey(), line.getValue());
+            } else if (products.containsKey(line.getKey())) {
+                cart.addItem(products.get(line.getKey()), line.getValue());
+            }
+        }
+    }
+
+    private Map<Long, BigDecimal> prices(List<Long> productIds) {
+        Map<Long, BigDecimal> prices = new HashMap<>();
+        for (int from = 0; from < productIds.size(); from += PRICE_LOOKUP_SIZE) {
+            List<Long> chunk = productIds.subList(from, Math.min(from + PRICE_LOOKUP_SIZE, productIds.size()));
+            for (ProductDto product : productService.getProductsByIds(chunk).getProducts()) {
+                prices.put(product.getId(), product.getPrice());
+            }
+        }
+        return prices;
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeout.toMillis();
+        states.forEach((username, state) -> {
+            synchronized (state) {
+                if (!state.dirty && state.lastAccess < cutoff) {
+                    state.evicted = true;
+                    states.remove(username, state);
+                }
+            }
+        });
+    }
+
+    private static final class CartState {
+        private final String username;
+        private final Long cartId;
+        private final LinkedHashMap<Long, Integer> quantities = new LinkedHashMap<>();
+        private final Map<Long, Long> itemIds = new HashMap<>();
+        private boolean dirty;
+        private boolean evicted;
+        private long lastAccess = System.currentTimeMillis();
+
+        private CartState(String username, Long cartId) {
+            this.username = username;
+            this.cartId = cartId;
+        }
+
+        // A removed line loses its item id too: the flush deletes that row, and a re-added line gets a new one
+        private void put(Long productId, int quantity) {
+            if (quantity > 0) {
+                quantities.put(productId, quantity);
+            } else {
+                quantities.remove(productId);
+                itemIds.remove(productId);
+            }
+        }
+
+        private void clear() {
+            quantities.clear();
+            itemIds.clear();
+        }
+
+        private CartView view() {
+            List<CartView.Line> lines = new ArrayList<>(quantities.size());
+            quantities.forEach((productId, quantity) ->
+                    lines.add(new CartView.Line(productId, itemIds.get(productId), quantity)));
+            return new CartView(cartId, lines);
+        }
+    }
+
+    private static final class CartSnapshot {
+        private final CartState state;
+        private final Map<Long, Integer> quantities;
+
+        private CartSnapshot(CartState state, Map<Long, Integer> quantities) {
+            this.state = state;
+            this.quantities = quantities;
+        }
+    }
+
+    // Handed to edit callbacks while the user's cart is locked; each change is journaled before it is applied
+    public final class CartEditor {
+        private final CartState state;
+
+        private CartEditor(CartState state) {
+            this.state = state;
+        }
+
+        public int quantity(Long productId) {
+            return state.quantities.getOrDefault(productId, 0);
+        }
+
+        public int lineCount() {
+            return state.quantities.size();
+        }
+
+        public void set(Long productId, int quantity) {
+            if (quantity(productId) == Math.max(quantity, 0)) {
+                return;
+            }
+            journal.appendSet(state.username, productId, Math.max(quantity, 0));
+            state.put(productId, quantity);
+            state.dirty = true;
+        }
+
+        public void clear() {
+            if (state.quantities.isEmpty()) {
+                return;
+            }
+            journal.appendClear(state.username);
+            state.clear();
+            state.dirty = true;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.ecommerce.cart;
+
+import java.util.List;
+
+// Immutable copy of a cart's lines, taken while the cart was locked
+public final class CartView {
+    private final Long cartId;
+    private final List<Line> lines;
+
+    CartView(Long cartId, List<Line> lines) {
+        this.cartId = cartId;
+        this.lines = List.copyOf(lines);
+    }
+
+    public Long getCartId() {
+        return cartId;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public static final class Line {
+        private final Long productId;
+        private final Long itemId;
+        private final int quantity;
+
+        Line(Long productId, Long itemId, int quantity) {
+            this.productId = productId;
+            this.itemId = itemId;
+            this.quantity = quantity;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+
+        // Null until the line has been flushed once
+        public Long getItemId() {
+            return itemId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+}
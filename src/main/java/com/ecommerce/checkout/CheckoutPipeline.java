@@ -0,0 +1,139 @@
+package com.ecommerce.checkout;
+
+import com.ecommerce.dto.CreateOrderRequest;
+import com.ecommerce.dto.OrderDto;
+import com.ecommerce.dto.PaymentInfoDto;
+import com.ecommerce.exception.CheckoutBusyException;
+import com.ecommerce.model.Payment;
+import com.ecommerce.service.OrderService;
+import com.ecommerce.service.PaymentService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Asynchronous checkout: the request thread only places the order and takes its stock, and a fixed pool of workers
+// charges the payment outside any transaction and then records the outcome. Admission is capped at the workers plus
+// the queue, so a slow payment provider turns into 503s instead of an ever-growing backlog
+@Component
+@Slf4j
+public class CheckoutPipeline {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final OrderService orderService;
+    private final PaymentService paymentService;
+    private final Duration abandonAfter;
+
+    private final ThreadPoolExecutor workers;
+    private final Semaphore admissions;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public CheckoutPipeline(
+            OrderService orderService,
+            PaymentService paymentService,
+            @Value("${checkout.workers:8}") int workerCount,
+            @Value("${checkout.queue-capacity:1000}") int queueCapacity,
+            @Value("${checkout.abandon-after:15m}") Duration abandonAfter) {
+        this.orderService = orderService;
+        this.paymentService = paymentService;
+        this.abandonAfter = abandonAfter;
+        // The queue itself is unbounded; the semaphore is what bounds it
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("checkout-"));
+        this.admissions = new Semaphore(workerCount + queueCapacity);
+    }
+
+    public OrderDto submit(String username, CreateOrderRequest orderRequest) {
+        if (!admissions.tryAcquire()) {
+            throw new CheckoutBusyException("Too many checkouts in progress, please retry");
+        }
+        OrderDto order;
+        try {
+            order = orderService.placePendingOrder(username, orderRequest);
+        } catch (RuntimeException e) {
+            admissions.release();
+            throw e;
+        }
+        // Card details stay in memory only; an order lost with them is cancelled by the abandoned-order sweep
+        inFlight.add(order.getId());
+        try {
+            workers.execute(() -> complete(order, orderRequest.getPaymentInfo()));
+        } catch (RejectedExecutionException e) {
+            // Only during shutdown; the order is left to the abandoned-order sweep
+            inFlight.remove(order.getId());
+            admissions.release();
+            throw e;
+        }
+        return order;
+    }
+
+    private void complete(OrderDto order, PaymentInfoDto paymentInfo) {
+        Payment payment = null;
+        try {
+            payment = paymentService.authorize(order.getTotalPrice(), paymentInfo);
+            OrderDto completed = orderService.completePendingOrder(order.getId(), payment);
+            log.debug("Checkout of order {} finished as {}", order.getId(), completed.getStatus());
+        } catch (RuntimeException e) {
+            log.error("Checkout of order {} failed, it stays pending until the sweep cancels it", order.getId(), e);
+            // The payment was not recorded, so the sweep cannot see it; give the money back now
+            if (payment != null && payment.getStatus() == Payment.PaymentStatus.COMPLETED) {
+                voidPayment(order.getId(), payment);
+            }
+        } finally {
+            inFlight.remove(order.getId());
+            admissions.release();
+        }
+    }
+
+    private void voidPayment(Long orderId, Payment payment) {
+        try {
+            paymentService.voidAuthorization(payment);
+        } catch (RuntimeException e) {
+            log.error("Could not void payment {} of order {}, it needs a manual refund",
+                    payment.getTransactionId(), orderId, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${checkout.sweep-interval-ms:60000}")
+    public void cancelAbandonedOrders() {
+        int cancelled = 0;
+        for (Long orderId : orderService.getUnpaidOrderIds(LocalDateTime.now().minus(abandonAfter))) {
+            if (inFlight.contains(orderId)) {
+                continue;
+            }
+            try {
+                if (orderService.abandonUnpaidOrder(orderId)) {
+                    cancelled++;
+                }
+            } catch (RuntimeException e) {
+                log.error("Could not cancel abandoned order {}", orderId, e);
+            }
+        }
+        if (cancelled > 0) {
+            log.info("Cancelled {} orders whose payment never completed", cancelled);
+        }
+    }
+
+    // Queued checkouts are finished before the context closes, while the database is still available
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("{} checkouts still pending at shutdown", inFlight.size());
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.ecommerce.checkout;
+
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.exception.IdempotencyConflictException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Idempotency-Key handling: the first request with a key runs, and its successful response is kept in memory and in
+// idempotency_keys until the TTL ends. Retries get that response back without running again; a retry arriving while
+// the original is still running waits for it. Failed requests are not stored, so their retries run normally.
+// The table is read and written with plain JDBC, so storing a key never flushes the request's persistence context
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final String SELECT_SQL = "SELECT request_hash, response_status, response_location, response_body, "
+            + "expires_at FROM idempotency_keys WHERE username = ? AND idempotency_key = ? AND expires_at > ?";
+    private static final String INSERT_SQL = "INSERT INTO idempotency_keys (username, idempotency_key, request_hash, "
+            + "response_status, response_location, response_body, created_at, expires_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM idempotency_keys WHERE expires_at <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration inFlightWait;
+
+    private final Cache<List<String>, StoredResponse> responses;
+    private final Map<List<String>, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            @Value("${idempotency.ttl:24h}") Duration ttl,
+            @Value("${idempotency.maximum-size:100000}") long maximumSize,
+            @Value("${idempotency.in-flight-wait:10s}") Duration inFlightWait) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.inFlightWait = inFlightWait;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // Keys are scoped per user; the operation name keeps one key from matching two kinds of request
+    public <T> ResponseEntity<T> execute(String username, String idempotencyKey, String operation, Object request,
+                                         Class<T> responseType, Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        List<String> key = List.of(username, idempotencyKey);
+        String requestHash = hash(operation, request);
+
+        while (true) {
+            StoredResponse stored = lookup(key, idempotencyKey, username);
+            if (stored != null) {
+                return replay(stored, requestHash, responseType);
+            }
+
+            InFlight mine = new InFlight(requestHash);
+            InFlight running = inFlight.putIfAbsent(key, mine);
+            if (running == null) {
+                return run(key, username, idempotencyKey, mine, responseType, action);
+            }
+            if (!running.requestHash.equals(requestHash)) {
+                throw new BadRequestException("Idempotency-Key was already used for a different request");
+            }
+            stored = await(running);
+            if (stored != null) {
+                return replay(stored, requestHash, responseType);
+            }
+            // The original failed and stored nothing, so this retry runs it again
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:3600000}")
+    public void deleteExpired() {
+        int deleted = jdbcTemplate.update(DELETE_EXPIRED_SQL, Timestamp.valueOf(LocalDateTime.now()));
+        if (deleted > 0) {
+            log.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    private <T> ResponseEntity<T> run(List<String> key, String username, String idempotencyKey, InFlight mine,
+                                      Class<T> responseType, Supplier<ResponseEntity<T>> action) {
+        StoredResponse stored = null;
+        try {
+            // Completed between the lookup and taking the key
+            StoredResponse completed = lookup(key, idempotencyKey, username);
+            if (completed != null) {
+                stored = completed;
+                return replay(completed, mine.requestHash, responseType);
+            }
+
+            ResponseEntity<T> response = action.get();
+            if (response.getStatusCode().is2xxSuccessful()) {
+                stored = store(key, username, idempotencyKey, mine.requestHash, response);
+            }
+            return response;
+        } finally {
+            inFlight.remove(key, mine);
+            mine.result.complete(stored);
+        }
+    }
+
+    private StoredResponse lookup(List<String> key, String idempotencyKey, String username) {
+        StoredResponse stored = responses.getIfPresent(key);
+        if (stored != null) {
+            if (stored.expiresAt.isAfter(LocalDateTime.now())) {
+                return stored;
+            }
+            responses.invalidate(key);
+            return null;
+        }
+        // Survives restarts and cache eviction
+        List<StoredResponse> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new StoredResponse(
+                        rs.getString("request_hash"), rs.getInt("response_status"), rs.getString("response_location"),
+                        rs.getString("response_body"), rs.getTimestamp("expires_at").toLocalDateTime()),
+                username, idempotencyKey, Timestamp.valueOf(LocalDateTime.now()));
+        if (rows.isEmpty()) {
+            return null;
+        }
+        responses.put(key, rows.get(0));
+        return rows.get(0);
+    }
+
+    private StoredResponse store(List<String> key, String username, String idempotencyKey, String requestHash,
+                                 ResponseEntity<?> response) {
+        LocalDateTime now = LocalDateTime.now();
+        URI location = response.getHeaders().getLocation();
+        StoredResponse stored = new StoredResponse(requestHash, response.getStatusCode().value(),
+                location != null ? location.toString() : null, serialize(response.getBody()), now.plus(ttl));
+        responses.put(key, stored);
+        try {
+            jdbcTemplate.update(INSERT_SQL, username, idempotencyKey, requestHash, stored.status, stored.location,
+                    stored.body, Timestamp.valueOf(now), Timestamp.valueOf(stored.expiresAt));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Idempotency key {} of user {} was stored concurrently", idempotencyKey, username);
+        } catch (RuntimeException e) {
+            // The request has already succeeded; only replays after a restart or eviction are lost
+            log.error("Could not persist idempotency key {} of user {}", idempotencyKey, username, e);
+        }
+        return stored;
+    }
+
+    private <T> ResponseEntity<T> replay(StoredResponse stored, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash.equals(requestHash)) {
+            throw new BadRequestException("Idempotency-Key was already used for a different request");
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(stored.status).header(REPLAYED_HEADER, "true");
+        if (stored.location != null) {
+            response.header(HttpHeaders.LOCATION, stored.location);
+        }
+        try {
+            return response.body(objectMapper.readValue(stored.body, responseType));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response is not readable", e);
+        }
+    }
+
+    private StoredResponse await(InFlight running) {
+        try {
+            return running.result.get(inFlightWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private String hash(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash the request", e);
+        }
+    }
+
+    private String serialize(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the response", e);
+        }
+    }
+
+    private static final class InFlight {
+        private final String requestHash;
+        private final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+
+        private InFlight(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+
+    private static final class StoredResponse {
+        private final String requestHash;
+        private final int status;
+        private final String location;
+        private final String body;
+        private final LocalDateTime expiresAt;
+
+        private StoredResponse(String requestHash, int status, String location, String body, LocalDateTime expiresAt) {
+            this.requestHash = requestHash;
+            this.status = status;
+            this.location = location;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -36,6 +36,7 @@ public class SecurityConfig {
                 .requestMatchers("/h2-console/**").permitAll()
                 .requestMatchers("/api/products").permitAll()
                 .requestMatchers("/api/products/**").permitAll()
+                .requestMatchers("/api/catalog/**").permitAll()
                 .anyRequest().authenticated()
             )
             .exceptionHandling(exception -> exception
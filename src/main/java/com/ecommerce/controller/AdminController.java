@@ -0,0 +1,70 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.cache.CatalogCache;
+import com.ecommerce.cache.ResponseCache;
+import com.ecommerce.dto.CacheStatsDto;
+import com.ecommerce.dto.FlashSaleStatusDto;
+import com.ecommerce.dto.StockLevelDto;
+import com.ecommerce.inventory.FlashSaleInventory;
+import com.ecommerce.service.InventoryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+@PreAuthorize("hasRole('ADMIN')")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final CatalogCache catalogCache;
+    private final ResponseCache responseCache;
+    private final FlashSaleInventory flashSaleInventory;
+    private final InventoryService inventoryService;
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<List<CacheStatsDto>> getCacheStats() {
+        List<CacheStatsDto> stats = new ArrayList<>(catalogCache.stats());
+        stats.add(responseCache.stats());
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/flash-sales")
+    public ResponseEntity<List<FlashSaleStatusDto>> getFlashSales() {
+        return ResponseEntity.ok(flashSaleInventory.list());
+    }
+
+    @PostMapping("/flash-sales/{productId}")
+    public ResponseEntity<FlashSaleStatusDto> startFlashSale(@PathVariable Long productId) {
+        return ResponseEntity.ok(flashSaleInventory.enable(productId));
+    }
+
+    @DeleteMapping("/flash-sales/{productId}")
+    public ResponseEntity<FlashSaleStatusDto> endFlashSale(@PathVariable Long productId) {
+        return ResponseEntity.ok(flashSaleInventory.disable(productId));
+    }
+
+    @GetMapping("/inventory/{productId}")
+    public ResponseEntity<StockLevelDto> getStockLevel(
+            @PathVariable Long productId,
+            @RequestParam(defaultValue = "50") int movements) {
+        return ResponseEntity.ok(inventoryService.getStockLevel(productId, movements));
+    }
+
+    @PostMapping("/inventory/{productId}/restock")
+    public ResponseEntity<StockLevelDto> restock(
+            @PathVariable Long productId,
+            @RequestParam int quantity) {
+        return ResponseEntity.ok(inventoryService.restock(productId, quantity));
+    }
+}
@@ -4,6 +4,7 @@ package com.ecommerce.controller;
 import com.ecommerce.dto.AddToCartRequest;
 import com.ecommerce.dto.ApiResponse;
 import com.ecommerce.dto.CartDto;
+import com.ecommerce.dto.CartPatchRequest;
 import com.ecommerce.service.CartService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -30,6 +31,13 @@ public class CartController {
         return ResponseEntity.ok(cartService.addToCart(authentication.getName(), request));
     }
 
+    @PatchMapping
+    public ResponseEntity<CartDto> patchCart(
+            Authentication authentication,
+            @Valid @RequestBody CartPatchRequest request) {
+        return ResponseEntity.ok(cartService.patchCart(authentication.getName(), request.getOperations()));
+    }
+
     @PutMapping("/items/{productId}")
     public ResponseEntity<CartDto> updateCartItem(
             Authentication authentication,
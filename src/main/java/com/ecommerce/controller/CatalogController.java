@@ -0,0 +1,25 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.dto.CatalogChangesDto;
+import com.ecommerce.service.CatalogSyncService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/catalog")
+@RequiredArgsConstructor
+public class CatalogController {
+
+    private final CatalogSyncService catalogSyncService;
+
+    @GetMapping("/changes")
+    public ResponseEntity<CatalogChangesDto> getChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(catalogSyncService.getChangesSince(since, limit));
+    }
+}
@@ -0,0 +1,47 @@
+package com.ecommerce.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+final class CatalogETags {
+
+    private CatalogETags() {
+    }
+
+    // JSON and CBOR encodings of the same version are different representations, so they get different tags,
+    // and caches are told the tag depends on Accept
+    static String of(long version, WebRequest request) {
+        if (request instanceof ServletWebRequest servletRequest && servletRequest.getResponse() != null) {
+            servletRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        boolean cbor = prefersCbor(request.getHeader(HttpHeaders.ACCEPT));
+        return "\"" + version + (cbor ? "-cbor" : "") + "\"";
+    }
+
+    // Mirrors content negotiation: the higher quality wins, and on a tie the more specific or earlier-listed type
+    static boolean prefersCbor(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        double cborQuality = 0;
+        double jsonQuality = 0;
+        boolean jsonFirst = false;
+        try {
+            for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+                double quality = mediaType.getQualityValue();
+                if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(mediaType)) {
+                    cborQuality = Math.max(cborQuality, quality);
+                } else if (MediaType.APPLICATION_JSON.equalsTypeAndSubtype(mediaType) && quality > jsonQuality) {
+                    jsonFirst |= cborQuality < quality;
+                    jsonQuality = quality;
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        return cborQuality > 0 && (cborQuality > jsonQuality || cborQuality == jsonQuality && !jsonFirst);
+    }
+}
@@ -4,12 +4,14 @@ package com.ecommerce.controller;
 import com.ecommerce.dto.ApiResponse;
 import com.ecommerce.dto.CategoryDto;
 import com.ecommerce.service.CategoryService;
+import com.ecommerce.sync.CatalogChangeFeed;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -19,14 +21,22 @@ import java.util.List;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CatalogChangeFeed catalogChangeFeed;
 
     @GetMapping
-    public ResponseEntity<List<CategoryDto>> getAllCategories() {
+    public ResponseEntity<List<CategoryDto>> getAllCategories(WebRequest webRequest) {
+        if (webRequest.checkNotModified(CatalogETags.of(catalogChangeFeed.latestVersion(CatalogChangeFeed.EntityType.CATEGORY), webRequest))) {
+            return null;
+        }
         return ResponseEntity.ok(categoryService.getAllCategories());
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<CategoryDto> getCategoryById(@PathVariable Long id) {
+    public ResponseEntity<CategoryDto> getCategoryById(@PathVariable Long id, WebRequest webRequest) {
+        Long version = catalogChangeFeed.version(CatalogChangeFeed.EntityType.CATEGORY, id);
+        if (version != null && webRequest.checkNotModified(CatalogETags.of(version, webRequest))) {
+            return null;
+        }
         return ResponseEntity.ok(categoryService.getCategoryById(id));
     }
 
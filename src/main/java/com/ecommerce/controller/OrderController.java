@@ -1,8 +1,11 @@
 
 package com.ecommerce.controller;
 
+import com.ecommerce.checkout.CheckoutPipeline;
+import com.ecommerce.checkout.IdempotencyStore;
 import com.ecommerce.dto.ApiResponse;
 import com.ecommerce.dto.CreateOrderRequest;
+import com.ecommerce.dto.FieldSelection;
 import com.ecommerce.dto.OrderDto;
 import com.ecommerce.model.Order;
 import com.ecommerce.service.OrderService;
@@ -10,38 +13,58 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.net.URI;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/orders")
 @RequiredArgsConstructor
 public class OrderController {
 
+    private static final String RESPOND_ASYNC = "respond-async";
+
     private final OrderService orderService;
+    private final CheckoutPipeline checkoutPipeline;
+    private final IdempotencyStore idempotencyStore;
 
     @GetMapping
-    public ResponseEntity<List<OrderDto>> getUserOrders(Authentication authentication) {
-        return ResponseEntity.ok(orderService.getUserOrders(authentication.getName()));
+    public ResponseEntity<MappingJacksonValue> getUserOrders(
+            Authentication authentication,
+            @RequestParam(required = false) Set<String> fields) {
+        FieldSelection selection = FieldSelection.forOrders(fields);
+        return ResponseEntity.ok(SparseFieldsets.filter(
+                orderService.getUserOrders(authentication.getName(), selection), OrderDto.FIELD_FILTER, selection));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<OrderDto> getOrderById(
+    public ResponseEntity<MappingJacksonValue> getOrderById(
             @PathVariable Long id,
-            Authentication authentication) {
-        return ResponseEntity.ok(orderService.getOrderById(id, authentication.getName()));
+            Authentication authentication,
+            @RequestParam(required = false) Set<String> fields) {
+        FieldSelection selection = FieldSelection.forOrders(fields);
+        return ResponseEntity.ok(SparseFieldsets.filter(
+                orderService.getOrderById(id, authentication.getName(), selection), OrderDto.FIELD_FILTER, selection));
     }
 
     @PostMapping
     public ResponseEntity<OrderDto> createOrder(
             Authentication authentication,
+            @RequestHeader(value = "Prefer", required = false) String prefer,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody CreateOrderRequest orderRequest) {
-        return new ResponseEntity<>(
-                orderService.createOrder(authentication.getName(), orderRequest),
-                HttpStatus.CREATED);
+        boolean async = prefer != null && prefer.contains(RESPOND_ASYNC);
+        if (idempotencyKey == null) {
+            return placeOrder(authentication.getName(), async, orderRequest);
+        }
+        // Retries with the same key get the first response back instead of placing another order
+        return idempotencyStore.execute(authentication.getName(), idempotencyKey,
+                async ? "create-order-async" : "create-order", orderRequest, OrderDto.class,
+                () -> placeOrder(authentication.getName(), async, orderRequest));
     }
 
     @PutMapping("/{id}/status")
@@ -59,4 +82,16 @@ public class OrderController {
         orderService.cancelOrder(id, authentication.getName());
         return ResponseEntity.ok(new ApiResponse(true, "Order cancelled successfully"));
     }
+
+    private ResponseEntity<OrderDto> placeOrder(String username, boolean async, CreateOrderRequest orderRequest) {
+        // RFC 7240: the order is accepted as PENDING and paid in the background; poll it for the outcome
+        if (async) {
+            OrderDto order = checkoutPipeline.submit(username, orderRequest);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/orders/" + order.getId()))
+                    .header("Preference-Applied", RESPOND_ASYNC)
+                    .body(order);
+        }
+        return new ResponseEntity<>(orderService.createOrder(username, orderRequest), HttpStatus.CREATED);
+    }
 }
@@ -2,42 +2,172 @@
 package com.ecommerce.controller;
 
 import com.ecommerce.dto.ApiResponse;
+import com.ecommerce.dto.CursorPage;
+import com.ecommerce.dto.FieldSelection;
+import com.ecommerce.dto.ProductBatchDto;
+import com.ecommerce.dto.ProductBatchRequest;
+import com.ecommerce.dto.ProductBulkUpdateRequest;
+import com.ecommerce.dto.ProductBulkUpdateResultDto;
 import com.ecommerce.dto.ProductDto;
+import com.ecommerce.dto.ProductFacetsDto;
+import com.ecommerce.dto.ProductImportResultDto;
+import com.ecommerce.dto.ProductSuggestionDto;
+import com.ecommerce.service.ProductImportService;
 import com.ecommerce.service.ProductService;
+import com.ecommerce.sync.CatalogChangeFeed;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/products")
 @RequiredArgsConstructor
 public class ProductController {
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String TEXT_CSV = "text/csv";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final CatalogChangeFeed catalogChangeFeed;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public ResponseEntity<List<ProductDto>> getAllProducts() {
-        return ResponseEntity.ok(productService.getAllProducts());
+    public ResponseEntity<MappingJacksonValue> getAllProducts(
+            @RequestParam(required = false) Set<String> fields,
+            WebRequest webRequest) {
+        FieldSelection selection = FieldSelection.forProducts(fields);
+        if (webRequest.checkNotModified(listETag(webRequest))) {
+            return null;
+        }
+        return ResponseEntity.ok(SparseFieldsets.filter(
+                productService.getAllProducts(selection), ProductDto.FIELD_FILTER, selection));
+    }
+
+    @GetMapping(params = {"limit", "!ids"})
+    public ResponseEntity<MappingJacksonValue> getProductPage(
+            @RequestParam(defaultValue = "0") Long after,
+            @RequestParam int limit,
+            @RequestParam(required = false) Set<String> fields,
+            WebRequest webRequest) {
+        FieldSelection selection = FieldSelection.forProducts(fields);
+        if (webRequest.checkNotModified(listETag(webRequest))) {
+            return null;
+        }
+        return ResponseEntity.ok(SparseFieldsets.filter(
+                productService.getProductPage(after, limit, selection), ProductDto.FIELD_FILTER, selection));
+    }
+
+    // A cursor without a page size still pages, rather than falling back to the full list
+    @GetMapping(params = {"after", "!limit", "!ids"})
+    public ResponseEntity<MappingJacksonValue> getProductPageAfter(
+            @RequestParam Long after,
+            @RequestParam(required = false) Set<String> fields,
+            WebRequest webRequest) {
+        return getProductPage(after, DEFAULT_PAGE_SIZE, fields, webRequest);
+    }
+
+    @GetMapping(params = "ids")
+    public ResponseEntity<ProductBatchDto> getProductsByIds(@RequestParam List<Long> ids, WebRequest webRequest) {
+        if (webRequest.checkNotModified(listETag(webRequest))) {
+            return null;
+        }
+        return ResponseEntity.ok(productService.getProductsByIds(ids));
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<ProductBatchDto> getProductsByIdsBatch(@Valid @RequestBody ProductBatchRequest request) {
+        return ResponseEntity.ok(productService.getProductsByIds(request.getIds()));
+    }
+
+    @GetMapping(value = "/stream", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            productService.streamAllProducts(product -> writeLine(out, product));
+            out.flush();
+        };
+        return ResponseEntity.ok(body);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ProductDto> getProductById(@PathVariable Long id) {
-        return ResponseEntity.ok(productService.getProductById(id));
+    public ResponseEntity<MappingJacksonValue> getProductById(
+            @PathVariable Long id,
+            @RequestParam(required = false) Set<String> fields,
+            WebRequest webRequest) {
+        FieldSelection selection = FieldSelection.forProducts(fields);
+        Long version = catalogChangeFeed.version(CatalogChangeFeed.EntityType.PRODUCT, id);
+        if (version != null && webRequest.checkNotModified(CatalogETags.of(version, webRequest))) {
+            return null;
+        }
+        // Single products come from the catalog cache, so the selection only trims the payload
+        return ResponseEntity.ok(SparseFieldsets.filter(
+                productService.getProductById(id), ProductDto.FIELD_FILTER, selection));
     }
 
     @GetMapping("/category/{categoryId}")
-    public ResponseEntity<List<ProductDto>> getProductsByCategory(@PathVariable Long categoryId) {
-        return ResponseEntity.ok(productService.getProductsByCategory(categoryId));
+    public ResponseEntity<MappingJacksonValue> getProductsByCategory(
+            @PathVariable Long categoryId,
+            @RequestParam(required = false) Set<String> fields,
+            WebRequest webRequest) {
+        FieldSelection selection = FieldSelection.forProducts(fields);
+        if (webRequest.checkNotModified(listETag(webRequest))) {
+            return null;
+        }
+        return ResponseEntity.ok(SparseFieldsets.filter(
+                productService.getProductsByCategory(categoryId), ProductDto.FIELD_FILTER, selection));
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<ProductDto>> searchProducts(@RequestParam String keyword) {
-        return ResponseEntity.ok(productService.searchProducts(keyword));
+    public ResponseEntity<List<ProductDto>> searchProducts(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(listETag(webRequest))) {
+            return null;
+        }
+        return ResponseEntity.ok(productService.searchProducts(keyword, limit, fuzzy));
+    }
+
+    @GetMapping("/filter")
+    public ResponseEntity<ProductFacetsDto> filterProducts(
+            @RequestParam(required = false) List<Long> categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "50") int limit,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(listETag(webRequest))) {
+            return null;
+        }
+        return ResponseEntity.ok(productService.filterProducts(categoryId, minPrice, maxPrice, inStock, offset, limit));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ProductSuggestionDto>> suggestProducts(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productService.suggestProducts(prefix, limit));
     }
 
     @PostMapping
@@ -46,16 +176,46 @@ public class ProductController {
         return new ResponseEntity<>(productService.createProduct(productDto), HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/import", consumes = {APPLICATION_NDJSON, TEXT_CSV})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProductImportResultDto> importProducts(
+            InputStream body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType) {
+        String format = contentType.startsWith(TEXT_CSV) ? ProductImportService.FORMAT_CSV : ProductImportService.FORMAT_NDJSON;
+        return ResponseEntity.ok(productImportService.importProducts(body, format));
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ProductDto> updateProduct(@PathVariable Long id, @Valid @RequestBody ProductDto productDto) {
         return ResponseEntity.ok(productService.updateProduct(id, productDto));
     }
 
+    @PatchMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProductBulkUpdateResultDto> bulkUpdateProducts(
+            @Valid @RequestBody ProductBulkUpdateRequest request) {
+        return ResponseEntity.ok(productService.bulkUpdateProducts(request.getUpdates()));
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse> deleteProduct(@PathVariable Long id) {
         productService.deleteProduct(id);
         return ResponseEntity.ok(new ApiResponse(true, "Product deleted successfully"));
     }
+
+    // Revalidation only needs the catalog version, never the products themselves
+    private String listETag(WebRequest webRequest) {
+        return CatalogETags.of(catalogChangeFeed.latestVersion(CatalogChangeFeed.EntityType.PRODUCT), webRequest);
+    }
+
+    private void writeLine(OutputStream out, ProductDto product) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(product));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,21 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.dto.FieldSelection;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+final class SparseFieldsets {
+
+    private SparseFieldsets() {
+    }
+
+    static MappingJacksonValue filter(Object body, String filterId, FieldSelection fields) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        SimpleBeanPropertyFilter filter = fields.isAll()
+                ? SimpleBeanPropertyFilter.serializeAll()
+                : SimpleBeanPropertyFilter.filterOutAllExcept(fields.getFields());
+        value.setFilters(new SimpleFilterProvider().addFilter(filterId, filter).setFailOnUnknownId(false));
+        return value;
+    }
+}
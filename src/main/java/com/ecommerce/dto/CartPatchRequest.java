@@ -0,0 +1,35 @@
+package com.ecommerce.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CartPatchRequest {
+    @NotEmpty
+    @Valid
+    private List<Operation> operations;
+
+    @Data
+    public static class Operation {
+        @NotNull
+        private Op op;
+
+        @NotNull
+        private Long productId;
+
+        // Required for ADD (at least 1) and SET (0 removes the line); ignored for REMOVE
+        @Min(0)
+        private Integer quantity;
+    }
+
+    public enum Op {
+        ADD,
+        SET,
+        REMOVE
+    }
+}
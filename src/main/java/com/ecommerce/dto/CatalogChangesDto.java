@@ -0,0 +1,20 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogChangesDto {
+    private long version;
+    private boolean resetRequired;
+    private boolean hasMore;
+    private List<ProductDto> products;
+    private List<Long> deletedProductIds;
+    private List<CategoryDto> categories;
+    private List<Long> deletedCategoryIds;
+}
@@ -0,0 +1,63 @@
+package com.ecommerce.dto;
+
+import com.ecommerce.exception.BadRequestException;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Validated "fields=" selection; the id is always included so clients can key and page the results
+public final class FieldSelection {
+
+    public static final Set<String> PRODUCT_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(List.of(
+            "id", "name", "description", "price", "stockQuantity", "imageUrl", "categoryId", "categoryName")));
+    public static final Set<String> ORDER_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(List.of(
+            "id", "items", "totalPrice", "orderDate", "status", "shippingAddress", "payment")));
+
+    private final Set<String> fields;
+
+    private FieldSelection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    public static FieldSelection all() {
+        return new FieldSelection(null);
+    }
+
+    public static FieldSelection forProducts(Set<String> requested) {
+        return of(requested, PRODUCT_FIELDS);
+    }
+
+    public static FieldSelection forOrders(Set<String> requested) {
+        return of(requested, ORDER_FIELDS);
+    }
+
+    private static FieldSelection of(Set<String> requested, Set<String> allowed) {
+        if (requested == null || requested.isEmpty()) {
+            return all();
+        }
+        Set<String> fields = new LinkedHashSet<>();
+        fields.add("id");
+        for (String field : requested) {
+            String name = field.trim();
+            if (!allowed.contains(name)) {
+                throw new BadRequestException("Unknown field '" + name + "', expected one of " + allowed);
+            }
+            fields.add(name);
+        }
+        return new FieldSelection(fields);
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    public Set<String> getFields() {
+        return fields;
+    }
+}
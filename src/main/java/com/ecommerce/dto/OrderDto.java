@@ -2,6 +2,7 @@
 package com.ecommerce.dto;
 
 import com.ecommerce.model.Order;
+import com.fasterxml.jackson.annotation.JsonFilter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,7 +14,10 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonFilter(OrderDto.FIELD_FILTER)
 public class OrderDto {
+    public static final String FIELD_FILTER = "orderFields";
+
     private Long id;
     private List<OrderItemDto> items;
     private BigDecimal totalPrice;
@@ -0,0 +1,12 @@
+package com.ecommerce.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProductBatchRequest {
+    @NotEmpty
+    private List<Long> ids;
+}
@@ -0,0 +1,30 @@
+package com.ecommerce.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+public class ProductBulkUpdateRequest {
+    @NotEmpty
+    @Valid
+    private List<Item> updates;
+
+    @Data
+    public static class Item {
+        @NotNull
+        private Long productId;
+
+        @DecimalMin("0")
+        private BigDecimal price;
+
+        @Min(0)
+        private Integer stockQuantity;
+    }
+}
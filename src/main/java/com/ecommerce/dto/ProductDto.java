@@ -1,6 +1,7 @@
 
 package com.ecommerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,7 +11,10 @@ import java.math.BigDecimal;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonFilter(ProductDto.FIELD_FILTER)
 public class ProductDto {
+    public static final String FIELD_FILTER = "productFields";
+
     private Long id;
     private String name;
     private String description;
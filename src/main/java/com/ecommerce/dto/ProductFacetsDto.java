@@ -0,0 +1,20 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacetsDto {
+    private int total;
+    private List<ProductDto> products;
+    private Map<Long, Integer> categoryCounts;
+    private int inStockCount;
+    private int outOfStockCount;
+    private List<PriceRangeCountDto> priceRanges;
+}
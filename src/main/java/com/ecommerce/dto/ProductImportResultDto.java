@@ -0,0 +1,17 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportResultDto {
+    private long imported;
+    private long failed;
+    private List<ProductImportErrorDto> errors;
+    private boolean errorsTruncated;
+}
@@ -0,0 +1,17 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLevelDto {
+    private Long productId;
+    private int available;
+    private boolean flashSale;
+    private List<StockMovementDto> recentMovements;
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.dto;
+
+import com.ecommerce.model.StockMovement;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovementDto {
+    private Long id;
+    private StockMovement.MovementType type;
+    private Integer quantity;
+    private Long orderId;
+    private LocalDateTime createdAt;
+}
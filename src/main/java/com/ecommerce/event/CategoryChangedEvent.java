@@ -0,0 +1,33 @@
+package com.ecommerce.event;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class CategoryChangedEvent {
+    private final ChangeType type;
+    private final Long categoryId;
+    private final List<Long> productIds;
+
+    public static CategoryChangedEvent created(Long categoryId) {
+        return new CategoryChangedEvent(ChangeType.CREATED, categoryId, List.of());
+    }
+
+    public static CategoryChangedEvent updated(Long categoryId, List<Long> productIds) {
+        return new CategoryChangedEvent(ChangeType.UPDATED, categoryId, productIds);
+    }
+
+    public static CategoryChangedEvent deleted(Long categoryId, List<Long> productIds) {
+        return new CategoryChangedEvent(ChangeType.DELETED, categoryId, productIds);
+    }
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
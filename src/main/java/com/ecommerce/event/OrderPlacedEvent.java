@@ -0,0 +1,15 @@
+package com.ecommerce.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+    private final Long orderId;
+    private final String username;
+    // Units ordered by product id, as read from the cart
+    private final Map<Long, Integer> quantities;
+}
@@ -0,0 +1,42 @@
+package com.ecommerce.event;
+
+import com.ecommerce.dto.ProductDto;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ProductChangedEvent {
+    private final ChangeType type;
+    private final Long productId;
+    private final Long categoryId;
+    private final Long previousCategoryId;
+    private final ProductDto product;
+    private final Integer stockQuantity;
+
+    public static ProductChangedEvent created(ProductDto product) {
+        return new ProductChangedEvent(ChangeType.CREATED, product.getId(), product.getCategoryId(), null, product,
+                product.getStockQuantity());
+    }
+
+    public static ProductChangedEvent updated(ProductDto product, Long previousCategoryId) {
+        return new ProductChangedEvent(ChangeType.UPDATED, product.getId(), product.getCategoryId(), previousCategoryId, product,
+                product.getStockQuantity());
+    }
+
+    public static ProductChangedEvent deleted(Long productId, Long categoryId) {
+        return new ProductChangedEvent(ChangeType.DELETED, productId, categoryId, null, null, null);
+    }
+
+    public static ProductChangedEvent stockChanged(Long productId, Long categoryId, Integer stockQuantity) {
+        return new ProductChangedEvent(ChangeType.STOCK_CHANGED, productId, categoryId, null, null, stockQuantity);
+    }
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED,
+        STOCK_CHANGED
+    }
+}
@@ -0,0 +1,5 @@
+package com.ecommerce.event;
+
+// Published when the suggester swaps in an index with new popularity weights
+public class SuggestionsRefreshedEvent {
+}
@@ -0,0 +1,11 @@
+package com.ecommerce.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CheckoutBusyException extends RuntimeException {
+    public CheckoutBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.ecommerce.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Getter
+@ResponseStatus(HttpStatus.CONFLICT)
+public class FlashSaleActiveException extends RuntimeException {
+    private final Long productId;
+
+    public FlashSaleActiveException(Long productId) {
+        super("Product " + productId + " is on flash sale; end the sale before editing its stock");
+        this.productId = productId;
+    }
+}
@@ -2,6 +2,7 @@
 package com.ecommerce.exception;
 
 import com.ecommerce.dto.ApiResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -26,6 +27,46 @@ public class GlobalExceptionHandler {
                 HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<ApiResponse> handleBadRequestException(
+            BadRequestException ex, WebRequest request) {
+        return new ResponseEntity<>(
+                new ApiResponse(false, ex.getMessage()),
+                HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<ApiResponse> handleInsufficientStockException(
+            InsufficientStockException ex, WebRequest request) {
+        return new ResponseEntity<>(
+                new ApiResponse(false, ex.getMessage()),
+                HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(FlashSaleActiveException.class)
+    public ResponseEntity<ApiResponse> handleFlashSaleActiveException(
+            FlashSaleActiveException ex, WebRequest request) {
+        return new ResponseEntity<>(
+                new ApiResponse(false, ex.getMessage()),
+                HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<ApiResponse> handleIdempotencyConflictException(
+            IdempotencyConflictException ex, WebRequest request) {
+        return new ResponseEntity<>(
+                new ApiResponse(false, ex.getMessage()),
+                HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(CheckoutBusyException.class)
+    public ResponseEntity<ApiResponse> handleCheckoutBusyException(
+            CheckoutBusyException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiResponse(false, ex.getMessage()));
+    }
+
     @ExceptionHandler(RefreshTokenException.class)
     public ResponseEntity<ApiResponse> handleRefreshTokenException(
             RefreshTokenException ex, WebRequest request) {
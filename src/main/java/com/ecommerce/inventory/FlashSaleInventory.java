@@ -0,0 +1,181 @@
+package com.ecommerce.inventory;
+
+import com.ecommerce.dto.FlashSaleStatusDto;
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.exception.FlashSaleActiveException;
+import com.ecommerce.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Opt-in flash-sale mode: while a product is on sale its available stock lives in a striped in-memory counter, and
+// the units sold are recorded in the stock ledger as one movement per product on every reconcile run
+@Component
+@Slf4j
+public class FlashSaleInventory {
+
+    private final StockLedger stockLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate separateTransaction;
+    private final int stripes;
+    private final long reconcileIntervalMs;
+
+    private final Map<Long, Sale> sales = new ConcurrentHashMap<>();
+
+    public FlashSaleInventory(
+            StockLedger stockLedger,
+            TransactionTemplate transactionTemplate,
+            @Value("${inventory.flash-sale.stripes:0}") int stripes,
+            @Value("${inventory.flash-sale.reconcile-interval-ms:1000}") long reconcileIntervalMs) {
+        this.stockLedger = stockLedger;
+        this.transactionTemplate = transactionTemplate;
+        this.separateTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.separateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.stripes = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        this.reconcileIntervalMs = reconcileIntervalMs;
+    }
+
+    public Outcome reserve(Long productId, int quantity) {
+        Sale sale = sales.get(productId);
+        if (sale == null || sale.closed) {
+            return Outcome.NOT_ON_SALE;
+        }
+        if (!sale.counter.tryTake(quantity)) {
+            return Outcome.SOLD_OUT;
+        }
+        sale.unreconciled.add(quantity);
+        return Outcome.RESERVED;
+    }
+
+    // Called after the surrounding transaction has completed, so a sale that ended meanwhile gets the units back
+    // in the ledger through a transaction of its own
+    public void release(Long productId, int quantity) {
+        Sale sale = sales.get(productId);
+        if (sale == null || sale.closed) {
+            separateTransaction.executeWithoutResult(status -> stockLedger.release(Map.of(productId, quantity), null));
+            return;
+        }
+        sale.counter.give(quantity);
+        sale.unreconciled.add(-quantity);
+    }
+
+    public boolean isOnSale(Long productId) {
+        Sale sale = sales.get(productId);
+        return sale != null && !sale.closed;
+    }
+
+    // While a sale runs the counter holds the stock, so a ledger edit would count the same units twice
+    public void checkNotOnSale(Collection<Long> productIds) {
+        for (Long productId : productIds) {
+            if (isOnSale(productId)) {
+                throw new FlashSaleActiveException(productId);
+            }
+        }
+    }
+
+    public long available(Long productId) {
+        Sale sale = sales.get(productId);
+        return sale != null ? sale.counter.available() : 0;
+    }
+
+    // Checkouts already reserving through the ledger have taken their units from the level the counter starts with
+    public synchronized FlashSaleStatusDto enable(Long productId) {
+        Sale existing = sales.get(productId);
+        if (existing != null && !existing.closed) {
+            throw new BadRequestException("Product " + productId + " is already on flash sale");
+        }
+        if (existing != null) {
+            reconcile();
+            sales.remove(productId);
+        }
+
+        int stock = stockLedger.available(productId);
+        Sale sale = new Sale(new StripedStockCounter(stock, stripes));
+        sales.put(productId, sale);
+        log.info("Flash sale started for product {} with {} units over {} stripes", productId, stock, stripes);
+        return status(productId, sale);
+    }
+
+    // New checkouts go back to the ledger at once; the sale is dropped after a final reconcile
+    public synchronized FlashSaleStatusDto disable(Long productId) {
+        Sale sale = sales.get(productId);
+        if (sale == null || sale.closed) {
+            throw new ResourceNotFoundException("Flash sale", "productId", productId);
+        }
+        sale.closed = true;
+        sale.closedAt = System.currentTimeMillis();
+        reconcile();
+        log.info("Flash sale ended for product {}", productId);
+        return status(productId, sale);
+    }
+
+    public List<FlashSaleStatusDto> list() {
+        List<FlashSaleStatusDto> statuses = new ArrayList<>();
+        sales.forEach((productId, sale) -> {
+            if (!sale.closed) {
+                statuses.add(status(productId, sale));
+            }
+        });
+        return statuses;
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.flash-sale.reconcile-interval-ms:1000}")
+    public synchronized void reconcile() {
+        Map<Long, Long> unitsSold = new HashMap<>();
+        sales.forEach((productId, sale) -> {
+            // Read then subtract, rather than reset, so units sold meanwhile stay for the next run
+            long delta = sale.unreconciled.sum();
+            if (delta != 0) {
+                sale.unreconciled.add(-delta);
+                unitsSold.put(productId, delta);
+            }
+        });
+
+        if (!unitsSold.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> stockLedger.recordSales(unitsSold));
+            } catch (RuntimeException e) {
+                log.error("Flash sale reconcile failed for products {}, retrying on the next run", unitsSold.keySet(), e);
+                unitsSold.forEach((productId, delta) -> sales.get(productId).unreconciled.add(delta));
+                return;
+            }
+        }
+
+        // Ended sales linger for one interval so a reservation racing the end is still written back
+        long cutoff = System.currentTimeMillis() - reconcileIntervalMs;
+        sales.entrySet().removeIf(entry -> entry.getValue().closed && entry.getValue().closedAt < cutoff
+                && entry.getValue().unreconciled.sum() == 0);
+    }
+
+    private static FlashSaleStatusDto status(Long productId, Sale sale) {
+        return new FlashSaleStatusDto(productId, !sale.closed, sale.counter.available(), sale.unreconciled.sum());
+    }
+
+    public enum Outcome {
+        RESERVED,
+        SOLD_OUT,
+        NOT_ON_SALE
+    }
+
+    private static final class Sale {
+        private final StripedStockCounter counter;
+        private final LongAdder unreconciled = new LongAdder();
+        private volatile boolean closed;
+        private volatile long closedAt;
+
+        private Sale(StripedStockCounter counter) {
+            this.counter = counter;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.ecommerce.inventory;
+
+import com.ecommerce.cache.SingleFlight;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.exception.InsufficientStockException;
+import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.model.StockMovement;
+import com.ecommerce.model.StockSnapshot;
+import com.ecommerce.repository.StockMovementRepository;
+import com.ecommerce.repository.StockSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Stock as an append-only ledger: every change is inserted into stock_movements and applied to an in-memory
+// projection, so checkouts never update a shared row. A product enters the projection on first use from its snapshot
+// plus the movements recorded after it; the snapshot job keeps that tail short. Loads run on the caller's connection,
+// so a checkout never needs a second one from the pool
+@Component
+@Slf4j
+public class StockLedger {
+
+    private static final int SNAPSHOT_LOCK_ATTEMPTS = 100;
+    private static final long SNAPSHOT_LOCK_RETRY_MS = 10;
+
+    private static final String INSERT_MOVEMENT_SQL = "INSERT INTO stock_movements "
+            + "(product_id, movement_type, quantity, order_id, created_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String PRODUCT_STOCK_SQL = "SELECT stock_quantity FROM products WHERE id = ?";
+    private static final String UPDATE_SNAPSHOT_SQL = "UPDATE stock_snapshots "
+            + "SET stock_quantity = ?, movement_id = ?, taken_at = ? WHERE product_id = ?";
+    private static final String INSERT_SNAPSHOT_SQL = "INSERT INTO stock_snapshots "
+            + "(stock_quantity, movement_id, taken_at, product_id) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_BASELINE_SQL = "INSERT INTO stock_snapshots "
+            + "(stock_quantity, movement_id, taken_at, product_id) VALUES (?, 0, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String SYNC_PRODUCT_SQL = "UPDATE products SET stock_quantity = ? WHERE id = ?";
+
+    private final StockMovementRepository movementRepository;
+    private final StockSnapshotRepository snapshotRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate separateTransaction;
+
+    private final Map<Long, AtomicInteger> levels = new ConcurrentHashMap<>();
+    private final SingleFlight<Long, AtomicInteger> loads = new SingleFlight<>();
+    private final Set<Long> unsnapshotted = ConcurrentHashMap.newKeySet();
+    private final Set<Long> unsynced = ConcurrentHashMap.newKeySet();
+    // Column values of products loaded without a snapshot, written as one by the first transaction that changes them
+    private final Map<Long, Integer> baselines = new ConcurrentHashMap<>();
+
+    // Held shared by every transaction with ledger changes until it completes, and exclusively by the snapshot job,
+    // so a snapshot only ever sees committed movements
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public StockLedger(
+            StockMovementRepository movementRepository,
+            StockSnapshotRepository snapshotRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.movementRepository = movementRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.separateTransaction = new TransactionTemplate(transactionManager);
+        this.separateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public int available(Long productId) {
+        return level(productId).get();
+    }
+
+    // Brings products into the projection ahead of a statement that writes their column, which a later load would
+    // otherwise take as the starting level. Unknown ids are skipped
+    public void load(Collection<Long> productIds) {
+        for (Long productId : productIds) {
+            try {
+                level(productId);
+            } catch (ResourceNotFoundException e) {
+                log.debug("Product {} not loaded into the stock ledger, it does not exist", productId);
+            }
+        }
+    }
+
+    // All or nothing, in ascending product id order; throws for the first product that cannot be covered
+    public void reserve(Map<Long, Integer> quantities, Long orderId) {
+        ChangeSet changes = changeSet();
+        Map<Long, Integer> ordered = new TreeMap<>(quantities);
+        // Units taken but not yet in the change set; those are given back here, the rest by the rollback
+        Map<Long, AtomicInteger> held = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Long, Integer> line : ordered.entrySet()) {
+                AtomicInteger level = level(line.getKey());
+                int quantity = line.getValue();
+                int current;
+                do {
+                    current = level.get();
+                    if (current < quantity) {
+                        throw new InsufficientStockException(line.getKey());
+                    }
+                } while (!level.compareAndSet(current, current - quantity));
+                held.put(line.getKey(), level);
+            }
+            for (Long productId : List.copyOf(held.keySet())) {
+                held.remove(productId);
+                changes.applied(productId, -ordered.get(productId));
+            }
+        } catch (RuntimeException e) {
+            held.forEach((productId, level) -> level.addAndGet(ordered.get(productId)));
+            throw e;
+        }
+        List<Object[]> rows = new ArrayList<>(ordered.size());
+        ordered.forEach((productId, quantity) ->
+                rows.add(row(productId, StockMovement.MovementType.RESERVE, -quantity, orderId)));
+        jdbcTemplate.batchUpdate(INSERT_MOVEMENT_SQL, rows);
+    }
+
+    public void release(Map<Long, Integer> quantities, Long orderId) {
+        record(quantities, StockMovement.MovementType.RELEASE, orderId);
+    }
+
+    public void restock(Long productId, int quantity) {
+        record(Map.of(productId, quantity), StockMovement.MovementType.RESTOCK, null);
+    }
+
+    // Units sold from flash-sale counters, already guarded there, recorded as one movement per product
+    public void recordSales(Map<Long, Long> unitsSold) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        unitsSold.forEach((productId, units) -> deltas.put(productId, (int) -units));
+        ChangeSet changes = changeSet();
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((productId, delta) -> {
+            level(productId).addAndGet(delta);
+            changes.applied(productId, delta);
+            StockMovement.MovementType type = delta < 0
+                    ? StockMovement.MovementType.RESERVE : StockMovement.MovementType.RELEASE;
+            rows.add(row(productId, type, delta, null));
+        });
+        jdbcTemplate.batchUpdate(INSERT_MOVEMENT_SQL, rows);
+    }
+
+    // Sets absolute stock levels, recording each as the difference to the current level. The difference is added rather
+    // than the level overwritten, so a checkout racing the adjustment is never lost from the projection
+    public void adjust(Map<Long, Integer> stockQuantities) {
+        ChangeSet changes = changeSet();
+        List<Object[]> rows = new ArrayList<>(stockQuantities.size());
+        new TreeMap<>(stockQuantities).forEach((productId, stockQuantity) -> {
+            AtomicInteger level = level(productId);
+            int delta = stockQuantity - level.get();
+            if (delta != 0) {
+                level.addAndGet(delta);
+                changes.applied(productId, delta);
+                rows.add(row(productId, StockMovement.MovementType.ADJUST, delta, null));
+            }
+        });
+        jdbcTemplate.batchUpdate(INSERT_MOVEMENT_SQL, rows);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.ChangeType.DELETED) {
+            levels.remove(event.getProductId());
+            baselines.remove(event.getProductId());
+            loads.forget(event.getProductId());
+        }
+    }
+
+    // Writes the projection of every product changed since the last run as its new snapshot
+    @Scheduled(fixedDelayString = "${inventory.ledger.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        if (unsnapshotted.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> stock = new HashMap<>();
+        long watermark;
+        if (!acquireSnapshotLock()) {
+            log.debug("Stock snapshot skipped, checkouts kept the ledger busy");
+            return;
+        }
+        try {
+            // No ledger transaction is in flight, so every movement up to the watermark is committed and applied
+            watermark = movementRepository.findMaxId();
+            for (Long productId : List.copyOf(unsnapshotted)) {
+                unsnapshotted.remove(productId);
+                AtomicInteger level = levels.get(productId);
+                if (level != null) {
+                    stock.put(productId, level.get());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            Timestamp takenAt = Timestamp.valueOf(LocalDateTime.now());
+            separateTransaction.executeWithoutResult(status -> {
+                List<Object[]> rows = new ArrayList<>(stock.size());
+                stock.forEach((productId, quantity) -> rows.add(new Object[]{quantity, watermark, takenAt, productId}));
+                int[] updated = jdbcTemplate.batchUpdate(UPDATE_SNAPSHOT_SQL, rows);
+                List<Object[]> inserts = new ArrayList<>();
+                for (int i = 0; i < updated.length; i++) {
+                    if (updated[i] == 0) {
+                        inserts.add(rows.get(i));
+                    }
+                }
+                jdbcTemplate.batchUpdate(INSERT_SNAPSHOT_SQL, inserts);
+            });
+            log.debug("Wrote stock snapshots for {} products at movement {}", stock.size(), watermark);
+        } catch (RuntimeException e) {
+            log.error("Stock snapshot failed, retrying on the next run", e);
+            unsnapshotted.addAll(stock.keySet());
+        }
+    }
+
+    // Polled with the untimed tryLock, which never queues: a queued writer would make every new checkout wait behind it
+    private boolean acquireSnapshotLock() {
+        for (int attempt = 0; attempt < SNAPSHOT_LOCK_ATTEMPTS; attempt++) {
+            if (lock.writeLock().tryLock()) {
+                return true;
+            }
+            try {
+                Thread.sleep(SNAPSHOT_LOCK_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // products.stock_quantity is a copy for catalog reads, refreshed in one batch instead of on every checkout
+    @Scheduled(fixedDelayString = "${inventory.ledger.sync-interval-ms:2000}")
+    public void syncProductStock() {
+        if (unsynced.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Long productId : List.copyOf(unsynced)) {
+            unsynced.remove(productId);
+            AtomicInteger level = levels.get(productId);
+            if (level != null) {
+                rows.add(new Object[]{level.get(), productId});
+            }
+        }
+        try {
+            separateTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(SYNC_PRODUCT_SQL, rows));
+        } catch (RuntimeException e) {
+            log.error("Product stock sync failed, retrying on the next run", e);
+            rows.forEach(row -> unsynced.add((Long) row[1]));
+        }
+    }
+
+    private void record(Map<Long, Integer> quantities, StockMovement.MovementType type, Long orderId) {
+        ChangeSet changes = changeSet();
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        new TreeMap<>(quantities).forEach((productId, quantity) -> {
+            level(productId).addAndGet(quantity);
+            changes.applied(productId, quantity);
+            rows.add(row(productId, type, quantity, orderId));
+        });
+        jdbcTemplate.batchUpdate(INSERT_MOVEMENT_SQL, rows);
+    }
+
+    private static Object[] row(Long productId, StockMovement.MovementType type, int quantity, Long orderId) {
+        return new Object[]{productId, type.name(), quantity, orderId, Timestamp.valueOf(LocalDateTime.now())};
+    }
+
+    private AtomicInteger level(Long productId) {
+        while (true) {
+            AtomicInteger level = levels.get(productId);
+            if (level != null) {
+                return level;
+            }
+            loads.execute(productId, this::load, loaded -> levels.putIfAbsent(productId, loaded));
+        }
+    }
+
+    // A product without a snapshot has never had a movement, so its column is the starting point
+    private AtomicInteger load(Long productId) {
+        StockSnapshot snapshot = snapshotRepository.findById(productId).orElse(null);
+        if (snapshot != null) {
+            long tail = movementRepository.sumQuantityAfter(productId, snapshot.getMovementId());
+            return new AtomicInteger((int) (snapshot.getStockQuantity() + tail));
+        }
+        Integer stock;
+        try {
+            stock = jdbcTemplate.queryForObject(PRODUCT_STOCK_SQL, Integer.class, productId);
+        } catch (EmptyResultDataAccessException e) {
+            throw new ResourceNotFoundException("Product", "id", productId);
+        }
+        int initial = stock != null ? stock : 0;
+        baselines.put(productId, initial);
+        return new AtomicInteger(initial);
+    }
+
+    // Joins the caller's transaction: takes the shared lock once, and undoes the projection changes on rollback
+    private ChangeSet changeSet() {
+        ChangeSet changes = (ChangeSet) TransactionSynchronizationManager.getResource(this);
+        if (changes != null) {
+            return changes;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Stock movements must be recorded inside a transaction");
+        }
+        lock.readLock().lock();
+        ChangeSet created = new ChangeSet();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            // A nested REQUIRES_NEW transaction records its movements in a change set of its own
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(StockLedger.this);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(StockLedger.this, created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(StockLedger.this);
+                if (status == STATUS_COMMITTED) {
+                    created.deltas.keySet().forEach(baselines::remove);
+                    unsnapshotted.addAll(created.deltas.keySet());
+                } else {
+                    created.deltas.forEach((productId, delta) -> {
+                        AtomicInteger level = levels.get(productId);
+                        if (level != null) {
+                            level.addAndGet(-delta);
+                        }
+                    });
+                }
+                // Marked only now, so the jobs never copy a level that still holds uncommitted changes
+                unsynced.addAll(created.deltas.keySet());
+                lock.readLock().unlock();
+            }
+        });
+        return created;
+    }
+
+    private final class ChangeSet {
+        private final Map<Long, Integer> deltas = new HashMap<>();
+
+        // The delta is kept before anything can fail, so a rollback always reverts it
+        private void applied(Long productId, int delta) {
+            boolean first = !deltas.containsKey(productId);
+            deltas.merge(productId, delta, Integer::sum);
+            Integer baseline = baselines.get(productId);
+            if (baseline != null && first) {
+                // Committed together with the movements, so a rebuild never has to trust the synced column again
+                jdbcTemplate.update(INSERT_BASELINE_SQL, baseline, Timestamp.valueOf(LocalDateTime.now()), productId);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.ecommerce.inventory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Available units split over padded stripes, each updated with CAS only. A thread draws from its home stripe and
+// only moves on to the others once that one runs dry, so reservations on one product rarely contend
+class StripedStockCounter {
+
+    // 16 longs between live slots keeps every stripe on its own pair of cache lines
+    private static final int PADDING = 16;
+
+    private final AtomicLongArray slots;
+    private final int stripes;
+
+    StripedStockCounter(long available, int stripes) {
+        this.stripes = stripes;
+        this.slots = new AtomicLongArray(stripes * PADDING);
+        for (int i = 0; i < stripes; i++) {
+            long share = available / stripes + (i < available % stripes ? 1 : 0);
+            slots.set(i * PADDING, share);
+        }
+    }
+
+    // All or nothing: units taken from some stripes are handed back if the rest cannot cover the quantity
+    boolean tryTake(int quantity) {
+        int home = (int) (Thread.currentThread().getId() % stripes);
+        long remaining = quantity;
+        long[] taken = null;
+        for (int n = 0; n < stripes && remaining > 0; n++) {
+            int index = ((home + n) % stripes) * PADDING;
+            while (true) {
+                long current = slots.get(index);
+                if (current <= 0) {
+                    break;
+                }
+                long take = Math.min(current, remaining);
+                if (slots.compareAndSet(index, current, current - take)) {
+                    remaining -= take;
+                    if (remaining > 0) {
+                        if (taken == null) {
+                            taken = new long[stripes];
+                        }
+                        taken[(home + n) % stripes] += take;
+                    }
+                    break;
+                }
+            }
+        }
+        if (remaining == 0) {
+            return true;
+        }
+        if (taken != null) {
+            for (int i = 0; i < stripes; i++) {
+                if (taken[i] > 0) {
+                    slots.addAndGet(i * PADDING, taken[i]);
+                }
+            }
+        }
+        return false;
+    }
+
+    void give(int quantity) {
+        int home = (int) (Thread.currentThread().getId() % stripes);
+        slots.addAndGet(home * PADDING, quantity);
+    }
+
+    long available() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += slots.get(i * PADDING);
+        }
+        return sum;
+    }
+}
@@ -1,14 +1,17 @@
-
 package com.ecommerce.model;
 
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Entity
@@ -30,6 +33,22 @@ public class Cart {
     @Column(name = "total_price")
     private BigDecimal totalPrice = BigDecimal.ZERO;
 
+    // Built on first use from the loaded items, together with a total at the current prices, and kept in step by the
+    // mutators below
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Map<Long, CartItem> itemsByProductId;
+
+    public void setItems(List<CartItem> items) {
+        this.items = items;
+        this.itemsByProductId = null;
+    }
+
+    public CartItem getItem(Long productId) {
+        return itemIndex().get(productId);
+    }
+
     public void recalculateTotal() {
         this.totalPrice = items.stream()
                 .map(item -> item.getProduct().getPrice().multiply(new BigDecimal(item.getQuantity())))
@@ -37,41 +56,61 @@ public class Cart {
     }
 
     public void addItem(Product product, int quantity) {
-        // Check if the product is already in the cart
-        for (CartItem item : items) {
-            if (item.getProduct().getId().equals(product.getId())) {
-                item.setQuantity(item.getQuantity() + quantity);
-                recalculateTotal();
-                return;
-            }
+        CartItem item = itemIndex().get(product.getId());
+        if (item != null) {
+            changeQuantity(item, item.getQuantity() + quantity);
+            return;
         }
 
-        // If not in cart, add new cart item
         CartItem newItem = new CartItem();
         newItem.setCart(this);
         newItem.setProduct(product);
-        newItem.setQuantity(quantity);
+        newItem.setQuantity(0);
         items.add(newItem);
-        recalculateTotal();
+        itemsByProductId.put(product.getId(), newItem);
+        changeQuantity(newItem, quantity);
     }
 
     public void removeItem(Long productId) {
-        items.removeIf(item -> item.getProduct().getId().equals(productId));
-        recalculateTotal();
+        CartItem item = itemIndex().remove(productId);
+        if (item != null) {
+            changeQuantity(item, 0);
+            items.remove(item);
+        }
     }
 
     public void updateItemQuantity(Long productId, int quantity) {
-        items.stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst()
-                .ifPresent(item -> {
-                    item.setQuantity(quantity);
-                    recalculateTotal();
-                });
+        CartItem item = itemIndex().get(productId);
+        if (item != null) {
+            changeQuantity(item, quantity);
+        }
     }
 
     public void clearItems() {
         items.clear();
+        itemsByProductId = null;
         totalPrice = BigDecimal.ZERO;
     }
+
+    // Only the changed line's difference is priced, so a mutation costs the same whatever the cart size
+    private void changeQuantity(CartItem item, int quantity) {
+        int delta = quantity - item.getQuantity();
+        item.setQuantity(quantity);
+        if (delta != 0) {
+            totalPrice = totalPrice.add(item.getProduct().getPrice().multiply(BigDecimal.valueOf(delta)));
+        }
+    }
+
+    private Map<Long, CartItem> itemIndex() {
+        if (itemsByProductId == null) {
+            itemsByProductId = new HashMap<>(Math.max(16, items.size() * 2));
+            BigDecimal total = BigDecimal.ZERO;
+            for (CartItem item : items) {
+                itemsByProductId.put(item.getProduct().getId(), item);
+                total = total.add(item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            }
+            totalPrice = total;
+        }
+        return itemsByProductId;
+    }
 }
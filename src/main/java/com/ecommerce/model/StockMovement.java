@@ -0,0 +1,44 @@
+package com.ecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Insert-only: a product's stock is its latest snapshot plus the quantities of the movements recorded after it
+@Data
+@Entity
+@Table(name = "stock_movements", indexes = @Index(name = "idx_stock_movements_product", columnList = "product_id, id"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "movement_type", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private MovementType type;
+
+    // Signed change to the available stock
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum MovementType {
+        RESERVE,
+        RELEASE,
+        RESTOCK,
+        ADJUST
+    }
+}
@@ -0,0 +1,29 @@
+package com.ecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// A product's stock as of the given movement id; later movements are replayed on top of it
+@Data
+@Entity
+@Table(name = "stock_snapshots")
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSnapshot {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "stock_quantity", nullable = false)
+    private Integer stockQuantity;
+
+    @Column(name = "movement_id", nullable = false)
+    private Long movementId;
+
+    @Column(name = "taken_at", nullable = false)
+    private LocalDateTime takenAt;
+}
@@ -1,14 +1,34 @@
-
 package com.ecommerce.repository;
 
 import com.ecommerce.model.Cart;
 import com.ecommerce.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUser(User user);
+
+    // One row per cart line, or a single row without item columns for an empty cart
+    @Query("SELECT c.id AS cartId, i.id AS itemId, i.product.id AS productId, i.quantity AS quantity "
+            + "FROM Cart c LEFT JOIN c.items i WHERE c.user.username = :username ORDER BY i.id")
+    List<CartLineRow> findLineRowsByUsername(@Param("username") String username);
+
+    // Carts with their items and products in one query, for writing a batch of carts back
+    @EntityGraph(attributePaths = {"items", "items.product", "items.product.category"})
+    List<Cart> findWithItemsByIdIn(Collection<Long> ids);
+
+    interface CartLineRow {
+        Long getCartId();
+        Long getItemId();
+        Long getProductId();
+        Integer getQuantity();
+    }
 }
@@ -1,14 +1,89 @@
-
 package com.ecommerce.repository;
 
 import com.ecommerce.model.Order;
+import com.ecommerce.model.Payment;
+import com.ecommerce.model.ShippingAddress;
 import com.ecommerce.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserOrderByOrderDateDesc(User user);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findForUpdateById(@Param("id") Long id);
+
+    @Query("SELECT o.id FROM Order o WHERE o.status = :status AND o.orderDate < :placedBefore "
+            + "AND NOT EXISTS (SELECT pay.id FROM Payment pay WHERE pay.order = o)")
+    List<Long> findUnpaidOrderIds(@Param("status") Order.OrderStatus status,
+                                  @Param("placedBefore") LocalDateTime placedBefore);
+
+    @Query("SELECT oi.product.id AS productId, SUM(oi.quantity) AS unitsSold FROM OrderItem oi GROUP BY oi.product.id")
+    List<ProductSales> sumUnitsSoldByProduct();
+
+    // Order rows without their collections; items and payments are fetched separately, and only when requested
+    String ORDER_SUMMARY_SELECT = "SELECT o.id AS id, u.username AS username, o.totalPrice AS totalPrice, "
+            + "o.orderDate AS orderDate, o.status AS status, o.shippingAddress AS shippingAddress "
+            + "FROM Order o JOIN o.user u";
+
+    @Query(ORDER_SUMMARY_SELECT + " WHERE u.username = :username ORDER BY o.orderDate DESC")
+    List<OrderSummary> findSummariesByUsername(@Param("username") String username);
+
+    @Query(ORDER_SUMMARY_SELECT + " WHERE o.id = :id")
+    Optional<OrderSummary> findSummaryById(@Param("id") Long id);
+
+    @Query("SELECT oi.order.id AS orderId, oi.id AS id, p.id AS productId, p.name AS productName, "
+            + "oi.quantity AS quantity, oi.priceAtPurchase AS priceAtPurchase "
+            + "FROM OrderItem oi JOIN oi.product p WHERE oi.order.id IN :orderIds ORDER BY oi.id")
+    List<OrderItemRow> findItemRowsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("SELECT pay.order.id AS orderId, pay.id AS id, pay.paymentDate AS paymentDate, "
+            + "pay.paymentMethod AS paymentMethod, pay.amount AS amount, pay.transactionId AS transactionId, "
+            + "pay.status AS status FROM Payment pay WHERE pay.order.id IN :orderIds")
+    List<PaymentRow> findPaymentRowsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    interface OrderSummary {
+        Long getId();
+        String getUsername();
+        BigDecimal getTotalPrice();
+        LocalDateTime getOrderDate();
+        Order.OrderStatus getStatus();
+        ShippingAddress getShippingAddress();
+    }
+
+    interface OrderItemRow {
+        Long getOrderId();
+        Long getId();
+        Long getProductId();
+        String getProductName();
+        Integer getQuantity();
+        BigDecimal getPriceAtPurchase();
+    }
+
+    interface PaymentRow {
+        Long getOrderId();
+        Long getId();
+        LocalDateTime getPaymentDate();
+        Payment.PaymentMethod getPaymentMethod();
+        BigDecimal getAmount();
+        String getTransactionId();
+        Payment.PaymentStatus getStatus();
+    }
+
+    interface ProductSales {
+        Long getProductId();
+        Long getUnitsSold();
+    }
 }
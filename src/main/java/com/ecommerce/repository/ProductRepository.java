@@ -1,14 +1,57 @@
-
 package com.ecommerce.repository;
 
+import com.ecommerce.dto.ProductDto;
 import com.ecommerce.model.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
-    List<Product> findByCategoryId(Long categoryId);
-    List<Product> findByNameContainingIgnoreCase(String name);
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
+
+    // Constructor projection: the category name is joined in the same statement and no entities are managed
+    String PRODUCT_DTO_SELECT = "SELECT new com.ecommerce.dto.ProductDto(p.id, p.name, p.description, p.price, "
+            + "p.stockQuantity, p.imageUrl, c.id, c.name) FROM Product p LEFT JOIN p.category c";
+
+    @Query(PRODUCT_DTO_SELECT + " ORDER BY p.id")
+    List<ProductDto> findAllDtos();
+
+    @Query(PRODUCT_DTO_SELECT + " WHERE p.id = :id")
+    Optional<ProductDto> findDtoById(@Param("id") Long id);
+
+    @Query(PRODUCT_DTO_SELECT + " WHERE c.id = :categoryId ORDER BY p.id")
+    List<ProductDto> findDtosByCategoryId(@Param("categoryId") Long categoryId);
+
+    @Query(PRODUCT_DTO_SELECT + " WHERE p.id IN :ids")
+    List<ProductDto> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(PRODUCT_DTO_SELECT + " WHERE p.id > :after ORDER BY p.id")
+    List<ProductDto> findDtoPageAfter(@Param("after") Long after, Pageable pageable);
+
+    @Query(PRODUCT_DTO_SELECT + " ORDER BY p.id")
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<ProductDto> streamAllDtos();
+
+    @Query("SELECT p.id FROM Product p WHERE p.category.id = :categoryId")
+    List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId);
+
+    @Query("SELECT p.id AS id, p.category.id AS categoryId, p.stockQuantity AS stockQuantity "
+            + "FROM Product p WHERE p.id IN :ids")
+    List<StockLevel> findStockLevelsByIdIn(@Param("ids") Collection<Long> ids);
+
+    interface StockLevel {
+        Long getId();
+        Long getCategoryId();
+        Integer getStockQuantity();
+    }
 }
@@ -0,0 +1,16 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.dto.FieldSelection;
+import com.ecommerce.dto.ProductBulkUpdateRequest;
+import com.ecommerce.dto.ProductDto;
+
+import java.util.List;
+
+public interface ProductRepositoryCustom {
+
+    // Selects only the requested columns (and joins the category only for its name); other properties stay null
+    List<ProductDto> findDtosWithFields(FieldSelection fields, Long after, Integer limit);
+
+    // Returns the number of rows matched for each update, in order; null price or stock leaves the column unchanged
+    int[] updatePricesAndStock(List<ProductBulkUpdateRequest.Item> updates);
+}
@@ -0,0 +1,92 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.dto.FieldSelection;
+import com.ecommerce.dto.ProductBulkUpdateRequest;
+import com.ecommerce.dto.ProductDto;
+import com.ecommerce.model.Category;
+import com.ecommerce.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private static final String UPDATE_PRICE_AND_STOCK_SQL = "UPDATE products "
+            + "SET price = COALESCE(?, price), stock_quantity = COALESCE(?, stock_quantity) WHERE id = ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<ProductDto> findDtosWithFields(FieldSelection fields, Long after, Integer limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductDto> query = cb.createQuery(ProductDto.class);
+        Root<Product> product = query.from(Product.class);
+
+        // The category id is the foreign key column, so only the name needs the join
+        Path<Long> categoryId = product.get("category").get("id");
+        Expression<String> categoryName = cb.nullLiteral(String.class);
+        if (fields.includes("categoryName")) {
+            Join<Product, Category> category = product.join("category", JoinType.LEFT);
+            categoryName = category.get("name");
+        }
+
+        query.select(cb.construct(ProductDto.class,
+                product.get("id"),
+                column(cb, product, fields, "name", String.class),
+                column(cb, product, fields, "description", String.class),
+                column(cb, product, fields, "price", BigDecimal.class),
+                column(cb, product, fields, "stockQuantity", Integer.class),
+                column(cb, product, fields, "imageUrl", String.class),
+                fields.includes("categoryId") ? categoryId : cb.nullLiteral(Long.class),
+                categoryName));
+        if (after != null) {
+            query.where(cb.greaterThan(product.get("id"), after));
+        }
+        query.orderBy(cb.asc(product.get("id")));
+
+        TypedQuery<ProductDto> typedQuery = entityManager.createQuery(query);
+        if (limit != null) {
+            typedQuery.setMaxResults(limit);
+        }
+        return typedQuery.getResultList();
+    }
+
+    @Override
+    public int[] updatePricesAndStock(List<ProductBulkUpdateRequest.Item> updates) {
+        List<Object[]> parameters = new ArrayList<>(updates.size());
+        for (ProductBulkUpdateRequest.Item update : updates) {
+            // Typed so the driver can bind a null inside COALESCE
+            parameters.add(new Object[]{
+                    new SqlParameterValue(Types.NUMERIC, update.getPrice()),
+                    new SqlParameterValue(Types.INTEGER, update.getStockQuantity()),
+                    update.getProductId()});
+        }
+        return jdbcTemplate.batchUpdate(UPDATE_PRICE_AND_STOCK_SQL, parameters);
+    }
+
+    private static <T> Expression<T> column(CriteriaBuilder cb, Root<Product> product, FieldSelection fields,
+                                            String field, Class<T> type) {
+        return fields.includes(field) ? product.get(field) : cb.nullLiteral(type);
+    }
+}
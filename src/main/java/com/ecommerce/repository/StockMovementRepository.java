@@ -0,0 +1,21 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.StockMovement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+    List<StockMovement> findByProductIdOrderByIdDesc(Long productId, Pageable pageable);
+
+    @Query("SELECT COALESCE(SUM(m.quantity), 0) FROM StockMovement m WHERE m.productId = :productId AND m.id > :after")
+    long sumQuantityAfter(@Param("productId") Long productId, @Param("after") Long after);
+
+    @Query("SELECT COALESCE(MAX(m.id), 0) FROM StockMovement m")
+    long findMaxId();
+}
@@ -0,0 +1,398 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.PriceRangeCountDto;
+import com.ecommerce.dto.ProductDto;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Column-oriented snapshot of the catalog: filters are bitset intersections, facet counts are popcounts
+@Component
+@Slf4j
+public class CatalogFacetIndex {
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+    private final long[] priceBoundariesInCents;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slotsByProductId = new HashMap<>();
+    private final Map<Long, BitSet> slotsByCategory = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final BitSet inStock = new BitSet();
+
+    // Slots are never reused. A rebuild assigns them in product id order and later creates are appended, so set bits
+    // come out in ascending id order except for creates that committed out of id order since the last rebuild
+    private long[] productIds = new long[1024];
+    private long[] pricesInCents = new long[1024];
+    private int[] stockQuantities = new int[1024];
+    private long[] categoryIds = new long[1024];
+    private int nextSlot;
+
+    // Live slots ordered by price, so a price filter is two binary searches and a walk over the matching slots
+    private long[] sortedPrices = new long[1024];
+    private int[] sortedSlots = new int[1024];
+    private int sortedCount;
+
+    public CatalogFacetIndex(
+            ProductRepository productRepository,
+            @Value("${catalog.facets.price-boundaries:25,50,100,250,500,1000}") List<BigDecimal> priceBoundaries) {
+        this.productRepository = productRepository;
+        this.priceBoundariesInCents = priceBoundaries.stream()
+                .mapToLong(CatalogFacetIndex::toCents)
+                .sorted()
+                .toArray();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            clear();
+            long after = 0L;
+            List<ProductDto> batch;
+            do {
+                batch = productRepository.findDtoPageAfter(after, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                for (ProductDto product : batch) {
+                    assign(allocateSlot(product.getId()), product.getPrice(), product.getStockQuantity(),
+                            product.getCategoryId());
+                    after = product.getId();
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+            sortPrices();
+            log.info("Catalog facet index built with {} products", slotsByProductId.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            switch (event.getType()) {
+                case CREATED, UPDATED -> {
+                    ProductDto product = event.getProduct();
+                    upsert(product.getId(), product.getPrice(), product.getStockQuantity(), product.getCategoryId());
+                }
+                case DELETED -> remove(event.getProductId());
+                case STOCK_CHANGED -> updateStock(event.getProductId(), event.getStockQuantity());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Result query(Collection<Long> categories, BigDecimal minPrice, BigDecimal maxPrice,
+                        Boolean inStockOnly, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet categoryMask = categoryMask(categories);
+            BitSet priceMask = priceMask(minPrice, maxPrice);
+            // Every combination below is intersected into this one mask in turn
+            BitSet mask = new BitSet(nextSlot);
+
+            intersect(mask, categoryMask, priceMask, inStockOnly);
+            int matches = mask.cardinality();
+            List<Long> page = new ArrayList<>(Math.max(0, limit));
+            int skipped = 0;
+            for (int slot = mask.nextSetBit(0); slot >= 0 && page.size() < limit; slot = mask.nextSetBit(slot + 1)) {
+                if (skipped++ >= offset) {
+                    page.add(productIds[slot]);
+                }
+            }
+
+            // Each facet is counted with every filter applied except its own
+            intersect(mask, null, priceMask, inStockOnly);
+            Map<Long, Integer> categoryCounts = new LinkedHashMap<>();
+            slotsByCategory.keySet().stream().sorted().forEach(categoryId -> categoryCounts.put(categoryId, 0));
+            for (int slot = mask.nextSetBit(0); slot >= 0; slot = mask.nextSetBit(slot + 1)) {
+                categoryCounts.computeIfPresent(categoryIds[slot], (categoryId, count) -> count + 1);
+            }
+
+            intersect(mask, categoryMask, priceMask, null);
+            int total = mask.cardinality();
+            mask.and(inStock);
+            int inStockCount = mask.cardinality();
+
+            intersect(mask, categoryMask, null, inStockOnly);
+            return new Result(matches, page, categoryCounts, inStockCount, total - inStockCount, priceRanges(mask));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet categoryMask(Collection<Long> categories) {
+        if (categories == null || categories.isEmpty()) {
+            return null;
+        }
+        BitSet mask = new BitSet(nextSlot);
+        for (Long categoryId : categories) {
+            BitSet slots = slotsByCategory.get(categoryId);
+            if (slots != null) {
+                mask.or(slots);
+            }
+        }
+        return mask;
+    }
+
+    private BitSet priceMask(BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        int from = minPrice != null ? firstPriceAtLeast(toCents(minPrice)) : 0;
+        int to = maxPrice != null ? firstPriceAtLeast(toCents(maxPrice) + 1) : sortedCount;
+        BitSet mask = new BitSet(nextSlot);
+        for (int i = from; i < to; i++) {
+            mask.set(sortedSlots[i]);
+        }
+        return mask;
+    }
+
+    // Overwrites target with the live slots passing every given filter; a null filter is not applied
+    private void intersect(BitSet target, BitSet categoryMask, BitSet priceMask, Boolean inStockOnly) {
+        target.clear();
+        target.or(live);
+        if (categoryMask != null) {
+            target.and(categoryMask);
+        }
+        if (priceMask != null) {
+            target.and(priceMask);
+        }
+        if (inStockOnly != null) {
+            if (inStockOnly) {
+                target.and(inStock);
+            } else {
+                target.andNot(inStock);
+            }
+        }
+    }
+
+    private List<PriceRangeCountDto> priceRanges(BitSet slots) {
+        int[] counts = new int[priceBoundariesInCents.length + 1];
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            int bucket = Arrays.binarySearch(priceBoundariesInCents, pricesInCents[slot]);
+            counts[bucket >= 0 ? bucket + 1 : -bucket - 1]++;
+        }
+
+        List<PriceRangeCountDto> ranges = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            BigDecimal from = i == 0 ? BigDecimal.ZERO : fromCents(priceBoundariesInCents[i - 1]);
+            BigDecimal to = i < priceBoundariesInCents.length ? fromCents(priceBoundariesInCents[i]) : null;
+            ranges.add(new PriceRangeCountDto(from, to, counts[i]));
+        }
+        return ranges;
+    }
+
+    private void upsert(Long productId, BigDecimal price, Integer stockQuantity, Long categoryId) {
+        Integer existing = slotsByProductId.get(productId);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+            unassignCategory(slot);
+            removePrice(slot);
+        } else {
+            slot = allocateSlot(productId);
+        }
+        assign(slot, price, stockQuantity, categoryId);
+        insertPrice(slot);
+    }
+
+    // Fills a slot's columns; the caller keeps the price order up to date
+    private void assign(int slot, BigDecimal price, Integer stockQuantity, Long categoryId) {
+        pricesInCents[slot] = price != null ? toCents(price) : 0L;
+        categoryIds[slot] = categoryId != null ? categoryId : 0L;
+        if (categoryId != null) {
+            slotsByCategory.computeIfAbsent(categoryId, key -> new BitSet()).set(slot);
+        }
+        live.set(slot);
+        setStock(slot, stockQuantity);
+    }
+
+    private void updateStock(Long productId, Integer stockQuantity) {
+        Integer slot = slotsByProductId.get(productId);
+        if (slot != null) {
+            setStock(slot, stockQuantity);
+        }
+    }
+
+    private void remove(Long productId) {
+        Integer slot = slotsByProductId.remove(productId);
+        if (slot == null) {
+            return;
+        }
+        unassignCategory(slot);
+        removePrice(slot);
+        live.clear(slot);
+        inStock.clear(slot);
+    }
+
+    private void setStock(int slot, Integer stockQuantity) {
+        stockQuantities[slot] = stockQuantity != null ? stockQuantity : 0;
+        inStock.set(slot, stockQuantities[slot] > 0);
+    }
+
+    private void unassignCategory(int slot) {
+        BitSet slots = slotsByCategory.get(categoryIds[slot]);
+        if (slots != null) {
+            slots.clear(slot);
+            if (slots.isEmpty()) {
+                slotsByCategory.remove(categoryIds[slot]);
+            }
+        }
+    }
+
+    private int allocateSlot(Long productId) {
+        if (nextSlot == productIds.length) {
+            int capacity = productIds.length * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            pricesInCents = Arrays.copyOf(pricesInCents, capacity);
+            stockQuantities = Arrays.copyOf(stockQuantities, capacity);
+            categoryIds = Arrays.copyOf(categoryIds, capacity);
+        }
+        productIds[nextSlot] = productId;
+        slotsByProductId.put(productId, nextSlot);
+        return nextSlot++;
+    }
+
+    private void insertPrice(int slot) {
+        if (sortedCount == sortedSlots.length) {
+            sortedPrices = Arrays.copyOf(sortedPrices, sortedCount * 2);
+            sortedSlots = Arrays.copyOf(sortedSlots, sortedCount * 2);
+        }
+        int at = firstPriceAtLeast(pricesInCents[slot] + 1);
+        System.arraycopy(sortedPrices, at, sortedPrices, at + 1, sortedCount - at);
+        System.arraycopy(sortedSlots, at, sortedSlots, at + 1, sortedCount - at);
+        sortedPrices[at] = pricesInCents[slot];
+        sortedSlots[at] = slot;
+        sortedCount++;
+    }
+
+    private void removePrice(int slot) {
+        long price = pricesInCents[slot];
+        for (int i = firstPriceAtLeast(price); i < sortedCount && sortedPrices[i] == price; i++) {
+            if (sortedSlots[i] == slot) {
+                System.arraycopy(sortedPrices, i + 1, sortedPrices, i, sortedCount - i - 1);
+                System.arraycopy(sortedSlots, i + 1, sortedSlots, i, sortedCount - i - 1);
+                sortedCount--;
+                return;
+            }
+        }
+    }
+
+    // Orders every live slot by price at once, rather than inserting them one by one during a rebuild
+    private void sortPrices() {
+        int[] slots = live.stream()
+                .boxed()
+                .sorted(Comparator.comparingLong(slot -> pricesInCents[slot]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        sortedCount = slots.length;
+        sortedSlots = Arrays.copyOf(slots, Math.max(1024, sortedCount));
+        sortedPrices = new long[sortedSlots.length];
+        for (int i = 0; i < sortedCount; i++) {
+            sortedPrices[i] = pricesInCents[sortedSlots[i]];
+        }
+    }
+
+    private int firstPriceAtLeast(long cents) {
+        int low = 0;
+        int high = sortedCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedPrices[middle] < cents) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void clear() {
+        slotsByProductId.clear();
+        slotsByCategory.clear();
+        live.clear();
+        inStock.clear();
+        productIds = new long[1024];
+        pricesInCents = new long[1024];
+        stockQuantities = new int[1024];
+        categoryIds = new long[1024];
+        nextSlot = 0;
+        sortedPrices = new long[1024];
+        sortedSlots = new int[1024];
+        sortedCount = 0;
+    }
+
+    private static long toCents(BigDecimal price) {
+        return price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    public static final class Result {
+        private final int total;
+        private final List<Long> productIds;
+        private final Map<Long, Integer> categoryCounts;
+        private final int inStockCount;
+        private final int outOfStockCount;
+        private final List<PriceRangeCountDto> priceRanges;
+
+        private Result(int total, List<Long> productIds, Map<Long, Integer> categoryCounts, int inStockCount,
+                       int outOfStockCount, List<PriceRangeCountDto> priceRanges) {
+            this.total = total;
+            this.productIds = productIds;
+            this.categoryCounts = categoryCounts;
+            this.inStockCount = inStockCount;
+            this.outOfStockCount = outOfStockCount;
+            this.priceRanges = priceRanges;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public List<Long> getProductIds() {
+            return productIds;
+        }
+
+        public Map<Long, Integer> getCategoryCounts() {
+            return categoryCounts;
+        }
+
+        public int getInStockCount() {
+            return inStockCount;
+        }
+
+        public int getOutOfStockCount() {
+            return outOfStockCount;
+        }
+
+        public List<PriceRangeCountDto> getPriceRanges() {
+            return priceRanges;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ecommerce.search;
+
+import java.util.Arrays;
+
+final class PostingList {
+
+    // Doc ordinals and their term frequencies, kept sorted by ordinal
+    private int[] docs = new int[4];
+    private int[] freqs = new int[4];
+    private int size;
+
+    void put(int doc, int freq) {
+        // New products get increasing ordinals, so appending is the common case
+        if (size == 0 || docs[size - 1] < doc) {
+            ensureCapacity();
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+            return;
+        }
+
+        int index = Arrays.binarySearch(docs, 0, size, doc);
+        if (index >= 0) {
+            freqs[index] = freq;
+            return;
+        }
+
+        int insertAt = -index - 1;
+        ensureCapacity();
+        System.arraycopy(docs, insertAt, docs, insertAt + 1, size - insertAt);
+        System.arraycopy(freqs, insertAt, freqs, insertAt + 1, size - insertAt);
+        docs[insertAt] = doc;
+        freqs[insertAt] = freq;
+        size++;
+    }
+
+    void remove(int doc) {
+        int index = Arrays.binarySearch(docs, 0, size, doc);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+        System.arraycopy(freqs, index + 1, freqs, index, size - index - 1);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int doc(int index) {
+        return docs[index];
+    }
+
+    int freq(int index) {
+        return freqs[index];
+    }
+
+    private void ensureCapacity() {
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+            freqs = Arrays.copyOf(freqs, size * 2);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.ProductDto;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int NAME_BOOST = 2;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final int MAX_FUZZY_EXPANSIONS = 3;
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<Long, Integer> docsByProductId = new HashMap<>();
+    private final TrigramIndex trigramIndex = new TrigramIndex();
+
+    // Per-doc state indexed by ordinal; ordinals are never reused
+    private long[] productIds = new long[1024];
+    private int[] docLengths = new int[1024];
+    private String[][] docTerms = new String[1024][];
+    private int nextDoc;
+    private int liveDocs;
+    private long totalLength;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            clear();
+            long after = 0L;
+            List<ProductDto> batch;
+            do {
+                batch = productRepository.findDtoPageAfter(after, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                for (ProductDto product : batch) {
+                    indexDocument(product.getId(), product.getName(), product.getDescription());
+                    after = product.getId();
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+            log.info("Product search index built with {} products and {} terms", liveDocs, postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        switch (event.getType()) {
+            case CREATED, UPDATED -> index(event.getProduct());
+            case DELETED -> remove(event.getProductId());
+            default -> {
+                // Stock changes do not affect the indexed text
+            }
+        }
+    }
+
+    public void index(ProductDto product) {
+        lock.writeLock().lock();
+        try {
+            indexDocument(product.getId(), product.getName(), product.getDescription());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsByProductId.remove(productId);
+            if (doc != null) {
+                unindexDocument(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Long> search(String query, int limit, boolean fuzzy) {
+        Set<String> terms = new LinkedHashSet<>(TextAnalyzer.tokenize(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<PostingList> lists = new ArrayList<>(terms.size());
+            List<Float> weights = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                if (list != null) {
+                    lists.add(list);
+                    weights.add(idf(list.size()));
+                } else if (fuzzy) {
+                    // Expand a misspelled term into its closest vocabulary terms, discounted by edit distance
+                    for (TrigramIndex.Match match : trigramIndex.closestTerms(term, MAX_FUZZY_EXPANSIONS)) {
+                        PostingList expansion = postings.get(match.term);
+                        lists.add(expansion);
+                        weights.add(idf(expansion.size()) / (1 + match.distance));
+                    }
+                }
+            }
+            if (lists.isEmpty()) {
+                return List.of();
+            }
+            return scoreDocuments(lists, weights, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Document-at-a-time BM25 over the sorted posting lists, keeping a bounded min-heap of hits
+    private List<Long> scoreDocuments(List<PostingList> lists, List<Float> weights, int limit) {
+        int[] cursors = new int[lists.size()];
+        float avgDocLength = liveDocs == 0 ? 1f : (float) totalLength / liveDocs;
+        PriorityQueue<ScoredDoc> top = new PriorityQueue<>(limit + 1);
+
+        while (true) {
+            int doc = Integer.MAX_VALUE;
+            for (int i = 0; i < lists.size(); i++) {
+                if (cursors[i] < lists.get(i).size()) {
+                    doc = Math.min(doc, lists.get(i).doc(cursors[i]));
+                }
+            }
+            if (doc == Integer.MAX_VALUE) {
+                break;
+            }
+
+            float lengthNorm = K1 * (1 - B + B * docLengths[doc] / avgDocLength);
+            float score = 0f;
+            for (int i = 0; i < lists.size(); i++) {
+                PostingList list = lists.get(i);
+                if (cursors[i] < list.size() && list.doc(cursors[i]) == doc) {
+                    int tf = list.freq(cursors[i]);
+                    score += weights.get(i) * (tf * (K1 + 1)) / (tf + lengthNorm);
+                    cursors[i]++;
+                }
+            }
+
+            if (top.size() < limit) {
+                top.add(new ScoredDoc(doc, score));
+            } else if (score > top.peek().score) {
+                top.poll();
+                top.add(new ScoredDoc(doc, score));
+            }
+        }
+
+        Long[] ranked = new Long[top.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = productIds[top.poll().doc];
+        }
+        return Arrays.asList(ranked);
+    }
+
+    private float idf(int docFrequency) {
+        return (float) Math.log(1 + (liveDocs - docFrequency + 0.5) / (docFrequency + 0.5));
+    }
+
+    private void indexDocument(Long productId, String name, String description) {
+        Integer existing = docsByProductId.get(productId);
+        int doc;
+        if (existing != null) {
+            doc = existing;
+            unindexDocument(doc);
+        } else {
+            doc = allocateDoc(productId);
+            docsByProductId.put(productId, doc);
+        }
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String token : TextAnalyzer.tokenize(name)) {
+            frequencies.merge(token, NAME_BOOST, Integer::sum);
+            length += NAME_BOOST;
+        }
+        for (String token : TextAnalyzer.tokenize(description)) {
+            frequencies.merge(token, 1, Integer::sum);
+            length++;
+        }
+
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> {
+                trigramIndex.addTerm(term);
+                return new PostingList();
+            }).put(doc, entry.getValue());
+        }
+        docTerms[doc] = frequencies.keySet().toArray(new String[0]);
+        docLengths[doc] = length;
+        totalLength += length;
+        liveDocs++;
+    }
+
+    private void unindexDocument(int doc) {
+        String[] terms = docTerms[doc];
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                list.remove(doc);
+                if (list.size() == 0) {
+                    postings.remove(term);
+                    trigramIndex.removeTerm(term);
+                }
+            }
+        }
+        docTerms[doc] = null;
+        totalLength -= docLengths[doc];
+        docLengths[doc] = 0;
+        liveDocs--;
+    }
+
+    private int allocateDoc(Long productId) {
+        if (nextDoc == productIds.length) {
+            int capacity = productIds.length * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+            docTerms = Arrays.copyOf(docTerms, capacity);
+        }
+        productIds[nextDoc] = productId;
+        return nextDoc++;
+    }
+
+    private void clear() {
+        postings.clear();
+        trigramIndex.clear();
+        docsByProductId.clear();
+        productIds = new long[1024];
+        docLengths = new int[1024];
+        docTerms = new String[1024][];
+        nextDoc = 0;
+        liveDocs = 0;
+        totalLength = 0;
+    }
+
+    private static final class ScoredDoc implements Comparable<ScoredDoc> {
+        private final int doc;
+        private final float score;
+
+        private ScoredDoc(int doc, float score) {
+            this.doc = doc;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredDoc other) {
+            return Float.compare(score, other.score);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.ProductDto;
+import com.ecommerce.dto.ProductSuggestionDto;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.event.SuggestionsRefreshedEvent;
+import com.ecommerce.repository.OrderRepository;
+import com.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSuggester {
+
+    public static final int TOP_K = 10;
+    private static final int MAX_INDEXED_LENGTH = 64;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+    private final OrderRepository orderRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Guards the current index against the in-place edits made by product events; full builds run off it
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object buildLock = new Object();
+    private Index index = new Index(Map.of());
+    // Product changes seen while a new index is being built, replayed onto it before it is swapped in
+    private List<ProductChangedEvent> changedDuringBuild;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (buildLock) {
+            startBuild();
+            Index built = new Index(loadUnitsSold());
+            long after = 0L;
+            List<ProductDto> batch;
+            do {
+                batch = productRepository.findDtoPageAfter(after, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                for (ProductDto product : batch) {
+                    built.insert(product.getId(), product.getName());
+                    after = product.getId();
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+            swap(built);
+            log.info("Product suggester built with {} products", built.entries.size());
+        }
+    }
+
+    // Rebuilds from the indexed names with the new weights, so suggestions are only blocked for the swap
+    @Scheduled(fixedDelayString = "${catalog.suggest.popularity-refresh-ms:900000}",
+            initialDelayString = "${catalog.suggest.popularity-refresh-ms:900000}")
+    public void refreshPopularity() {
+        synchronized (buildLock) {
+            Map<Long, Long> sales = loadUnitsSold();
+            List<Entry> current = startBuild();
+            boolean changed = current.stream()
+                    .anyMatch(entry -> entry.weight != sales.getOrDefault(entry.productId, 0L));
+            Index built = new Index(sales);
+            if (changed) {
+                for (Entry entry : current) {
+                    built.insert(entry.productId, entry.name);
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                if (changed) {
+                    changedDuringBuild.forEach(built::apply);
+                    index = built;
+                } else {
+                    index.unitsSold = sales;
+                }
+                changedDuringBuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (changed) {
+                eventPublisher.publishEvent(new SuggestionsRefreshedEvent());
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.ChangeType.STOCK_CHANGED) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.apply(event);
+            if (changedDuringBuild != null) {
+                changedDuringBuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ProductSuggestionDto> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = index.root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+
+            int count = Math.min(Math.min(limit, TOP_K), node.topCount);
+            List<ProductSuggestionDto> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long productId = node.topIds[i];
+                suggestions.add(new ProductSuggestionDto(productId, index.entries.get(productId).name));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Entry> startBuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringBuild = new ArrayList<>();
+            return new ArrayList<>(index.entries.values());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void swap(Index built) {
+        lock.writeLock().lock();
+        try {
+            changedDuringBuild.forEach(built::apply);
+            changedDuringBuild = null;
+            index = built;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<Long, Long> loadUnitsSold() {
+        Map<Long, Long> sales = new HashMap<>();
+        for (OrderRepository.ProductSales row : orderRepository.sumUnitsSoldByProduct()) {
+            sales.put(row.getProductId(), row.getUnitsSold());
+        }
+        return sales;
+    }
+
+    private static String normalize(String text) {
+        String normalized = String.join(" ", TextAnalyzer.tokenize(text));
+        return normalized.length() > MAX_INDEXED_LENGTH ? normalized.substring(0, MAX_INDEXED_LENGTH) : normalized;
+    }
+
+    // "laptop pro x" is reachable from "lap", "pro" and "x"
+    private static List<String> wordSuffixes(String normalized) {
+        List<String> suffixes = new ArrayList<>();
+        suffixes.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            suffixes.add(normalized.substring(i + 1));
+        }
+        return suffixes;
+    }
+
+    private static final class Index {
+        private final Node root = new Node();
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private Map<Long, Long> unitsSold;
+
+        private Index(Map<Long, Long> unitsSold) {
+            this.unitsSold = unitsSold;
+        }
+
+        private void apply(ProductChangedEvent event) {
+            delete(event.getProductId());
+            if (event.getType() != ProductChangedEvent.ChangeType.DELETED) {
+                ProductDto product = event.getProduct();
+                insert(product.getId(), product.getName());
+            }
+        }
+
+        private void insert(Long productId, String name) {
+            String normalized = normalize(name);
+            if (normalized.isEmpty()) {
+                return;
+            }
+            Entry entry = new Entry(productId, name, normalized, unitsSold.getOrDefault(productId, 0L));
+            entries.put(productId, entry);
+
+            for (String suffix : wordSuffixes(normalized)) {
+                Node node = root;
+                for (int i = 0; i < suffix.length(); i++) {
+                    node = node.getOrCreateChild(suffix.charAt(i));
+                    node.offer(productId, entry.weight);
+                }
+                node.addTerminal(productId);
+            }
+        }
+
+        private void delete(Long productId) {
+            Entry entry = entries.remove(productId);
+            if (entry == null) {
+                return;
+            }
+
+            // Nodes whose full top-K list lost an entry may now have a replacement deeper in the subtree
+            Set<Node> stale = new LinkedHashSet<>();
+            for (String suffix : wordSuffixes(entry.normalizedName)) {
+                Node[] path = new Node[suffix.length() + 1];
+                path[0] = root;
+                int depth = 0;
+                while (depth < suffix.length() && path[depth] != null) {
+                    Node node = path[depth].child(suffix.charAt(depth));
+                    path[++depth] = node;
+                    if (node != null && node.removeTop(productId)) {
+                        stale.add(node);
+                    }
+                }
+                if (path[depth] == null) {
+                    continue;
+                }
+                path[depth].removeTerminal(productId);
+                // Nodes left with nothing under them are unlinked, so deleted names do not keep their branches
+                for (; depth > 0 && path[depth].isEmpty(); depth--) {
+                    path[depth - 1].removeChild(suffix.charAt(depth - 1));
+                    stale.remove(path[depth]);
+                }
+            }
+            for (Node node : stale) {
+                recompute(node);
+            }
+        }
+
+        private void recompute(Node node) {
+            node.topCount = 0;
+            List<Node> pending = new ArrayList<>();
+            pending.add(node);
+            while (!pending.isEmpty()) {
+                Node current = pending.remove(pending.size() - 1);
+                for (int i = 0; i < current.terminalCount; i++) {
+                    Entry entry = entries.get(current.terminals[i]);
+                    if (entry != null) {
+                        node.offer(entry.productId, entry.weight);
+                    }
+                }
+                for (int i = 0; i < current.childCount; i++) {
+                    pending.add(current.children[i]);
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final long productId;
+        private final String name;
+        private final String normalizedName;
+        private final long weight;
+
+        private Entry(long productId, String name, String normalizedName, long weight) {
+            this.productId = productId;
+            this.name = name;
+            this.normalizedName = normalizedName;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int childCount;
+
+        // Top-K products under this prefix, ordered by weight desc then id asc
+        private final long[] topIds = new long[TOP_K];
+        private final long[] topWeights = new long[TOP_K];
+        private int topCount;
+
+        // Products whose indexed suffix ends exactly at this node
+        private long[] terminals = new long[0];
+        private int terminalCount;
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, 0, childCount, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node getOrCreateChild(char key) {
+            int index = Arrays.binarySearch(keys, 0, childCount, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, insertAt, keys, insertAt + 1, childCount - insertAt);
+            System.arraycopy(children, insertAt, children, insertAt + 1, childCount - insertAt);
+            Node node = new Node();
+            keys[insertAt] = key;
+            children[insertAt] = node;
+            childCount++;
+            return node;
+        }
+
+        private void offer(long productId, long weight) {
+            for (int i = 0; i < topCount; i++) {
+                if (topIds[i] == productId) {
+                    return;
+                }
+            }
+            if (topCount == TOP_K && !ranksBefore(weight, productId, topWeights[TOP_K - 1], topIds[TOP_K - 1])) {
+                return;
+            }
+
+            int position = Math.min(topCount, TOP_K - 1);
+            while (position > 0 && ranksBefore(weight, productId, topWeights[position - 1], topIds[position - 1])) {
+                topIds[position] = topIds[position - 1];
+                topWeights[position] = topWeights[position - 1];
+                position--;
+            }
+            topIds[position] = productId;
+            topWeights[position] = weight;
+            if (topCount < TOP_K) {
+                topCount++;
+            }
+        }
+
+        // Returns true when the list was full, i.e. another candidate might now qualify
+        private boolean removeTop(long productId) {
+            for (int i = 0; i < topCount; i++) {
+                if (topIds[i] == productId) {
+                    boolean wasFull = topCount == TOP_K;
+                    System.arraycopy(topIds, i + 1, topIds, i, topCount - i - 1);
+                    System.arraycopy(topWeights, i + 1, topWeights, i, topCount - i - 1);
+                    topCount--;
+                    return wasFull;
+                }
+            }
+            return false;
+        }
+
+        private void removeChild(char key) {
+            int index = Arrays.binarySearch(keys, 0, childCount, key);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(keys, index + 1, keys, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            children[--childCount] = null;
+        }
+
+        private boolean isEmpty() {
+            return childCount == 0 && terminalCount == 0;
+        }
+
+        private void addTerminal(long productId) {
+            if (terminalCount == terminals.length) {
+                terminals = Arrays.copyOf(terminals, Math.max(1, terminalCount * 2));
+            }
+            terminals[terminalCount++] = productId;
+        }
+
+        private void removeTerminal(long productId) {
+            for (int i = 0; i < terminalCount; i++) {
+                if (terminals[i] == productId) {
+                    terminals[i] = terminals[--terminalCount];
+                    return;
+                }
+            }
+        }
+
+        private static boolean ranksBefore(long weight, long productId, long otherWeight, long otherProductId) {
+            return weight > otherWeight || (weight == otherWeight && productId < otherProductId);
+        }
+    }
+}
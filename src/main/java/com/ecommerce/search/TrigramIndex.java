@@ -0,0 +1,142 @@
+package com.ecommerce.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Maps trigrams to the vocabulary terms containing them, used to correct misspelled query terms
+final class TrigramIndex {
+
+    private static final int MAX_SCANNED_POSTINGS = 4000;
+    private static final int MAX_VERIFIED_CANDIDATES = 32;
+    private static final double MIN_SIMILARITY = 0.3;
+
+    private final Map<String, Set<String>> termsByTrigram = new HashMap<>();
+
+    void addTerm(String term) {
+        for (String trigram : trigrams(term)) {
+            termsByTrigram.computeIfAbsent(trigram, key -> new HashSet<>()).add(term);
+        }
+    }
+
+    void removeTerm(String term) {
+        for (String trigram : trigrams(term)) {
+            Set<String> terms = termsByTrigram.get(trigram);
+            if (terms != null) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    termsByTrigram.remove(trigram);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        termsByTrigram.clear();
+    }
+
+    List<Match> closestTerms(String token, int limit) {
+        List<String> queryTrigrams = new ArrayList<>(trigrams(token));
+        // Rarest trigrams first, so the scan budget is spent on the most selective ones
+        queryTrigrams.sort(Comparator.comparingInt(trigram -> termsByTrigram.getOrDefault(trigram, Set.of()).size()));
+
+        // The budget counts every posting visited, so a trigram shared by most of the vocabulary costs no more than
+        // the budget; the remaining, even more common trigrams are skipped with it
+        Map<String, Integer> sharedCounts = new HashMap<>();
+        int scanned = 0;
+        for (String trigram : queryTrigrams) {
+            Iterator<String> terms = termsByTrigram.getOrDefault(trigram, Set.of()).iterator();
+            while (scanned < MAX_SCANNED_POSTINGS && terms.hasNext()) {
+                sharedCounts.merge(terms.next(), 1, Integer::sum);
+                scanned++;
+            }
+            if (scanned == MAX_SCANNED_POSTINGS) {
+                break;
+            }
+        }
+
+        List<Match> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : sharedCounts.entrySet()) {
+            String term = entry.getKey();
+            double similarity = 2.0 * entry.getValue() / (queryTrigrams.size() + trigrams(term).size());
+            if (similarity >= MIN_SIMILARITY) {
+                candidates.add(new Match(term, similarity, 0));
+            }
+        }
+        candidates.sort((left, right) -> Double.compare(right.similarity, left.similarity));
+
+        int maxEdits = token.length() <= 4 ? 1 : 2;
+        List<Match> matches = new ArrayList<>();
+        for (Match candidate : candidates.subList(0, Math.min(candidates.size(), MAX_VERIFIED_CANDIDATES))) {
+            int distance = boundedEditDistance(token, candidate.term, maxEdits);
+            if (distance <= maxEdits) {
+                matches.add(new Match(candidate.term, candidate.similarity, distance));
+            }
+        }
+        matches.sort((left, right) -> left.distance != right.distance
+                ? Integer.compare(left.distance, right.distance)
+                : Double.compare(right.similarity, left.similarity));
+        return matches.subList(0, Math.min(matches.size(), limit));
+    }
+
+    private static Set<String> trigrams(String term) {
+        String padded = "  " + term + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    // Damerau-Levenshtein (adjacent transpositions) that gives up once every cell in a row exceeds maxEdits
+    private static int boundedEditDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return maxEdits + 1;
+        }
+        int[] previousPrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previousPrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    static final class Match {
+        final String term;
+        final double similarity;
+        final int distance;
+
+        private Match(String term, double similarity, int distance) {
+            this.term = term;
+            this.similarity = similarity;
+            this.distance = distance;
+        }
+    }
+}
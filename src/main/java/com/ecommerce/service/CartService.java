@@ -1,138 +1,199 @@
-
 package com.ecommerce.service;
 
+import com.ecommerce.cart.CartStore;
+import com.ecommerce.cart.CartView;
 import com.ecommerce.dto.AddToCartRequest;
 import com.ecommerce.dto.CartDto;
 import com.ecommerce.dto.CartItemDto;
+import com.ecommerce.dto.CartPatchRequest;
+import com.ecommerce.dto.ProductDto;
+import com.ecommerce.event.OrderPlacedEvent;
+import com.ecommerce.dto.ProductBatchDto;
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.exception.InsufficientStockException;
 import com.ecommerce.exception.ResourceNotFoundException;
-import com.ecommerce.model.Cart;
-import com.ecommerce.model.CartItem;
-import com.ecommerce.model.Product;
-import com.ecommerce.model.User;
-import com.ecommerce.repository.CartRepository;
-import com.ecommerce.repository.ProductRepository;
-import com.ecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+// Carts are served and mutated in memory by the CartStore, which persists them in the background
 @Service
 @RequiredArgsConstructor
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final UserRepository userRepository;
-    private final ProductRepository productRepository;
+    // Bounded by the catalog batch lookup used to price a cart
+    private static final int MAX_CART_LINES = 500;
+    private static final int MAX_PATCH_OPERATIONS = 500;
+
+    private final CartStore cartStore;
+    private final ProductService productService;
 
     public CartDto getCart(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-        
-        Cart cart = cartRepository.findByUser(user)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    newCart.setUser(user);
-                    newCart.setTotalPrice(BigDecimal.ZERO);
-                    return cartRepository.save(newCart);
-                });
-        
-        return mapToDto(cart);
+        return mapToDto(cartStore.view(username));
     }
 
-    @Transactional
     public CartDto addToCart(String username, AddToCartRequest request) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-        
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", request.getProductId()));
-        
-        if (product.getStockQuantity() < request.getQuantity()) {
-            throw new RuntimeException("Not enough stock available");
-        }
-        
-        Cart cart = cartRepository.findByUser(user)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    newCart.setUser(user);
-                    newCart.setTotalPrice(BigDecimal.ZERO);
-                    return cartRepository.save(newCart);
-                });
-        
-        cart.addItem(product, request.getQuantity());
-        cart = cartRepository.save(cart);
-        
+        // Validate against the catalog cache; the cart only keeps the product id
+        ProductDto productDto = productService.getProductById(request.getProductId());
+
+        // Checked against the resulting quantity, as PATCH does
+        CartView cart = cartStore.edit(username, editor -> {
+            int current = editor.quantity(productDto.getId());
+            if (productDto.getStockQuantity() < current + request.getQuantity()) {
+                throw new InsufficientStockException(productDto.getId());
+            }
+            if (current == 0 && editor.lineCount() >= MAX_CART_LINES) {
+                throw new BadRequestException("A cart can hold at most " + MAX_CART_LINES + " different products");
+            }
+            editor.set(productDto.getId(), current + request.getQuantity());
+        });
         return mapToDto(cart);
     }
 
-    @Transactional
     public CartDto updateCartItem(String username, Long productId, int quantity) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-        
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart", "user", username));
-        
-        productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
-        
-        cart.updateItemQuantity(productId, quantity);
-        cart = cartRepository.save(cart);
-        
+        if (quantity < 0) {
+            throw new BadRequestException("Quantity must not be negative");
+        }
+        ProductDto productDto = productService.getProductById(productId);
+
+        CartView cart = cartStore.edit(username, editor -> {
+            int current = editor.quantity(productId);
+            if (current == 0) {
+                return;
+            }
+            if (quantity > current && productDto.getStockQuantity() < quantity) {
+                throw new InsufficientStockException(productId);
+            }
+            editor.set(productId, quantity);
+        });
         return mapToDto(cart);
     }
 
-    @Transactional
     public CartDto removeFromCart(String username, Long productId) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-        
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart", "user", username));
-        
-        cart.removeItem(productId);
-        cart = cartRepository.save(cart);
-        
+        return mapToDto(cartStore.edit(username, editor -> editor.set(productId, 0)));
+    }
+
+    // Applies the operations in order and all-or-nothing: every product is looked up in one batch, and stock is
+    // checked once per product against its final quantity before anything is changed
+    public CartDto patchCart(String username, List<CartPatchRequest.Operation> operations) {
+        if (operations.size() > MAX_PATCH_OPERATIONS) {
+            throw new BadRequestException("At most " + MAX_PATCH_OPERATIONS + " cart operations can be sent at once");
+        }
+        for (CartPatchRequest.Operation operation : operations) {
+            if (operation.getOp() == CartPatchRequest.Op.ADD
+                    && (operation.getQuantity() == null || operation.getQuantity() < 1)) {
+                throw new BadRequestException("ADD for product " + operation.getProductId() + " needs a quantity of at least 1");
+            }
+            if (operation.getOp() == CartPatchRequest.Op.SET && operation.getQuantity() == null) {
+                throw new BadRequestException("SET for product " + operation.getProductId() + " needs a quantity");
+            }
+        }
+
+        List<Long> productIds = operations.stream()
+                .map(CartPatchRequest.Operation::getProductId)
+                .distinct()
+                .collect(Collectors.toList());
+        ProductBatchDto batch = productService.getProductsByIds(productIds);
+        if (!batch.getMissingIds().isEmpty()) {
+            throw new ResourceNotFoundException("Product", "id", batch.getMissingIds().get(0));
+        }
+        Map<Long, ProductDto> products = batch.getProducts().stream()
+                .collect(Collectors.toMap(ProductDto::getId, Function.identity()));
+
+        CartView cart = cartStore.edit(username, editor -> {
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            for (CartPatchRequest.Operation operation : operations) {
+                Long productId = operation.getProductId();
+                int current = quantities.containsKey(productId) ? quantities.get(productId) : editor.quantity(productId);
+                int next = switch (operation.getOp()) {
+                    case ADD -> current + operation.getQuantity();
+                    case SET -> operation.getQuantity();
+                    case REMOVE -> 0;
+                };
+                quantities.put(productId, next);
+            }
+
+            int lineCount = editor.lineCount();
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                ProductDto product = products.get(entry.getKey());
+                int before = editor.quantity(entry.getKey());
+                if (entry.getValue() > before && product.getStockQuantity() < entry.getValue()) {
+                    throw new InsufficientStockException(product.getId());
+                }
+                if (before == 0 && entry.getValue() > 0) {
+                    lineCount++;
+                } else if (before > 0 && entry.getValue() == 0) {
+                    lineCount--;
+                }
+            }
+            if (lineCount > MAX_CART_LINES) {
+                throw new BadRequestException("A cart can hold at most " + MAX_CART_LINES + " different products");
+            }
+            quantities.forEach(editor::set);
+        });
         return mapToDto(cart);
     }
 
-    @Transactional
     public void clearCart(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-        
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart", "user", username));
-        
-        cart.clearItems();
-        cartRepository.save(cart);
+        cartStore.edit(username, CartStore.CartEditor::clear);
     }
 
-    private CartDto mapToDto(Cart cart) {
-        CartDto cartDto = new CartDto();
-        cartDto.setId(cart.getId());
-        cartDto.setTotalPrice(cart.getTotalPrice());
-        
-        List<CartItemDto> itemDtos = cart.getItems().stream()
-                .map(this::mapToDto)
+    // Quantities by product id, in the order the products were added
+    public Map<Long, Integer> getCartQuantities(String username) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartView.Line line : cartStore.view(username).getLines()) {
+            quantities.put(line.getProductId(), line.getQuantity());
+        }
+        return quantities;
+    }
+
+    // Runs once the order is committed, so a failed checkout leaves the cart intact. Only the ordered units are taken
+    // out: lines added or raised after checkout read the cart stay in it
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        cartStore.edit(event.getUsername(), editor -> event.getQuantities().forEach((productId, quantity) ->
+                editor.set(productId, editor.quantity(productId) - quantity)));
+    }
+
+    // Names and prices come from the catalog cache; lines whose product has been deleted are left out
+    private CartDto mapToDto(CartView cart) {
+        List<Long> productIds = cart.getLines().stream()
+                .map(CartView.Line::getProductId)
                 .collect(Collectors.toList());
-        
-        cartDto.setItems(itemDtos);
-        return cartDto;
+        Map<Long, ProductDto> products = productIds.isEmpty() ? Map.of()
+                : productService.getProductsByIds(productIds).getProducts().stream()
+                        .collect(Collectors.toMap(ProductDto::getId, Function.identity()));
+
+        List<CartItemDto> itemDtos = new ArrayList<>(cart.getLines().size());
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartView.Line line : cart.getLines()) {
+            ProductDto product = products.get(line.getProductId());
+            if (product == null) {
+                continue;
+            }
+            CartItemDto dto = mapToDto(line, product);
+            total = total.add(dto.getSubtotal());
+            itemDtos.add(dto);
+        }
+        return new CartDto(cart.getCartId(), itemDtos, total);
     }
 
-    private CartItemDto mapToDto(CartItem item) {
+    private CartItemDto mapToDto(CartView.Line line, ProductDto product) {
         CartItemDto dto = new CartItemDto();
-        dto.setId(item.getId());
-        dto.setProductId(item.getProduct().getId());
-        dto.setProductName(item.getProduct().getName());
-        dto.setProductPrice(item.getProduct().getPrice());
-        dto.setQuantity(item.getQuantity());
-        dto.setSubtotal(item.getProduct().getPrice().multiply(new BigDecimal(item.getQuantity())));
+        dto.setId(line.getItemId());
+        dto.setProductId(product.getId());
+        dto.setProductName(product.getName());
+        dto.setProductPrice(product.getPrice());
+        dto.setQuantity(line.getQuantity());
+        dto.setSubtotal(product.getPrice().multiply(new BigDecimal(line.getQuantity())));
         return dto;
     }
 }
@@ -0,0 +1,60 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.CatalogChangesDto;
+import com.ecommerce.dto.CategoryDto;
+import com.ecommerce.dto.ProductDto;
+import com.ecommerce.sync.CatalogChangeFeed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class CatalogSyncService {
+
+    private static final int MAX_CHANGES = 500;
+
+    private final CatalogChangeFeed catalogChangeFeed;
+    private final ProductService productService;
+    private final CategoryService categoryService;
+
+    public CatalogChangesDto getChangesSince(long since, int limit) {
+        CatalogChangeFeed.Slice slice = catalogChangeFeed.changesSince(since, Math.max(1, Math.min(limit, MAX_CHANGES)));
+        if (slice.isResetRequired()) {
+            return new CatalogChangesDto(slice.getVersion(), true, false, List.of(), List.of(), List.of(), List.of());
+        }
+
+        List<Long> productIds = new ArrayList<>();
+        List<Long> deletedProductIds = new ArrayList<>();
+        Set<Long> categoryIds = new HashSet<>();
+        List<Long> deletedCategoryIds = new ArrayList<>();
+        for (CatalogChangeFeed.Change change : slice.getChanges()) {
+            boolean product = change.getType() == CatalogChangeFeed.EntityType.PRODUCT;
+            if (change.isDeleted()) {
+                (product ? deletedProductIds : deletedCategoryIds).add(change.getId());
+            } else if (product) {
+                productIds.add(change.getId());
+            } else {
+                categoryIds.add(change.getId());
+            }
+        }
+
+        // Upserts carry the current state; an entity deleted since then shows up as a tombstone on the next poll
+        List<ProductDto> products = productIds.isEmpty()
+                ? List.of()
+                : productService.getProductsByIds(productIds).getProducts();
+        List<CategoryDto> categories = categoryIds.isEmpty()
+                ? List.of()
+                : categoryService.getAllCategories().stream()
+                        .filter(category -> categoryIds.contains(category.getId()))
+                        .collect(Collectors.toList());
+
+        return new CatalogChangesDto(slice.getVersion(), false, slice.isHasMore(), products, deletedProductIds,
+                categories, deletedCategoryIds);
+    }
+}
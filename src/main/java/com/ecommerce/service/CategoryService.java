@@ -1,11 +1,17 @@
 
 package com.ecommerce.service;
 
+import com.ecommerce.cache.CatalogCache;
 import com.ecommerce.dto.CategoryDto;
+import com.ecommerce.event.CategoryChangedEvent;
+import com.ecommerce.event.ProductChangedEvent;
 import com.ecommerce.exception.ResourceNotFoundException;
 import com.ecommerce.model.Category;
+import com.ecommerce.model.Product;
 import com.ecommerce.repository.CategoryRepository;
+import com.ecommerce.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,17 +23,20 @@ import java.util.stream.Collectors;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CatalogCache catalogCache;
 
     public List<CategoryDto> getAllCategories() {
-        return categoryRepository.findAll().stream()
+        return catalogCache.getAllCategories(() -> categoryRepository.findAll().stream()
                 .map(this::mapToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     public CategoryDto getCategoryById(Long id) {
-        Category category = categoryRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
-        return mapToDto(category);
+        return catalogCache.getCategory(id, key -> categoryRepository.findById(key)
+                .map(this::mapToDto)
+                .orElseThrow(() -> new ResourceNotFoundException("Category", "id", key)));
     }
 
     @Transactional
@@ -37,6 +46,7 @@ public class CategoryService {
         category.setDescription(categoryDto.getDescription());
         
         Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(CategoryChangedEvent.created(savedCategory.getId()));
         return mapToDto(savedCategory);
     }
 
@@ -49,6 +59,7 @@ public class CategoryService {
         category.setDescription(categoryDto.getDescription());
         
         Category updatedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(CategoryChangedEvent.updated(id, productRepository.findIdsByCategoryId(id)));
         return mapToDto(updatedCategory);
     }
 
@@ -56,7 +67,13 @@ public class CategoryService {
     public void deleteCategory(Long id) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
+        // Products are removed along with their category
+        List<Long> productIds = category.getProducts().stream()
+                .map(Product::getId)
+                .collect(Collectors.toList());
         categoryRepository.delete(category);
+        productIds.forEach(productId -> eventPublisher.publishEvent(ProductChangedEvent.deleted(productId, id)));
+        eventPublisher.publishEvent(CategoryChangedEvent.deleted(id, productIds));
     }
 
     private CategoryDto mapToDto(Category category) {
@@ -0,0 +1,140 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.StockLevelDto;
+import com.ecommerce.dto.StockMovementDto;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.exception.InsufficientStockException;
+import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.inventory.FlashSaleInventory;
+import com.ecommerce.inventory.StockLedger;
+import com.ecommerce.model.StockMovement;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.StockMovementRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+// Stock changes are movements appended to the stock ledger, checked against its in-memory projection, so checkouts
+// never update or lock a product row. Products on flash sale are served from their striped counters instead
+@Service
+@RequiredArgsConstructor
+public class InventoryService {
+
+    private static final int MAX_MOVEMENTS = 500;
+
+    private final StockLedger stockLedger;
+    private final FlashSaleInventory flashSaleInventory;
+    private final ProductRepository productRepository;
+    private final StockMovementRepository stockMovementRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Takes the quantities out of stock, or throws and leaves the caller's transaction to roll back what was taken
+    @Transactional
+    public void reserve(Map<Long, Integer> quantities, Long orderId) {
+        Map<Long, Integer> ordered = new TreeMap<>(quantities);
+        Map<Long, Integer> fromCounters = new HashMap<>();
+        Map<Long, Integer> fromLedger = new HashMap<>();
+        ordered.forEach((productId, quantity) -> {
+            switch (flashSaleInventory.reserve(productId, quantity)) {
+                case RESERVED -> {
+                    if (fromCounters.isEmpty()) {
+                        // Counters are outside the transaction, so a rollback has to hand the units back
+                        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                            @Override
+                            public void afterCompletion(int status) {
+                                if (status != STATUS_COMMITTED) {
+                                    fromCounters.forEach(flashSaleInventory::release);
+                                }
+                            }
+                        });
+                    }
+                    fromCounters.put(productId, quantity);
+                }
+                case SOLD_OUT -> throw new InsufficientStockException(productId);
+                case NOT_ON_SALE -> fromLedger.put(productId, quantity);
+            }
+        });
+        if (!fromLedger.isEmpty()) {
+            stockLedger.reserve(fromLedger, orderId);
+        }
+        publishStockLevels(ordered);
+    }
+
+    @Transactional
+    public void release(Map<Long, Integer> quantities, Long orderId) {
+        Map<Long, Integer> toCounters = new HashMap<>();
+        Map<Long, Integer> toLedger = new HashMap<>();
+        quantities.forEach((productId, quantity) ->
+                (flashSaleInventory.isOnSale(productId) ? toCounters : toLedger).put(productId, quantity));
+        if (!toLedger.isEmpty()) {
+            stockLedger.release(toLedger, orderId);
+        }
+        if (!toCounters.isEmpty()) {
+            // Returned only once the cancellation commits
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    toCounters.forEach(flashSaleInventory::release);
+                }
+            });
+        }
+        publishStockLevels(quantities);
+    }
+
+    @Transactional
+    public StockLevelDto restock(Long productId, int quantity) {
+        if (quantity <= 0) {
+            throw new BadRequestException("Restock quantity must be positive");
+        }
+        if (!productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Product", "id", productId);
+        }
+        flashSaleInventory.checkNotOnSale(List.of(productId));
+        stockLedger.restock(productId, quantity);
+        publishStockLevels(Map.of(productId, quantity));
+        return getStockLevel(productId, 20);
+    }
+
+    public StockLevelDto getStockLevel(Long productId, int movements) {
+        if (!productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Product", "id", productId);
+        }
+        List<StockMovementDto> recent = stockMovementRepository
+                .findByProductIdOrderByIdDesc(productId, PageRequest.of(0, Math.max(1, Math.min(movements, MAX_MOVEMENTS))))
+                .stream()
+                .map(this::mapToDto)
+                .collect(Collectors.toList());
+        boolean flashSale = flashSaleInventory.isOnSale(productId);
+        return new StockLevelDto(productId, currentStock(productId), flashSale, recent);
+    }
+
+    // Catalog listeners get the projected level; products.stock_quantity catches up on the ledger's next sync
+    private void publishStockLevels(Map<Long, Integer> quantities) {
+        for (ProductRepository.StockLevel level : productRepository.findStockLevelsByIdIn(quantities.keySet())) {
+            eventPublisher.publishEvent(ProductChangedEvent.stockChanged(level.getId(), level.getCategoryId(),
+                    currentStock(level.getId())));
+        }
+    }
+
+    private int currentStock(Long productId) {
+        return flashSaleInventory.isOnSale(productId)
+                ? (int) flashSaleInventory.available(productId)
+                : stockLedger.available(productId);
+    }
+
+    private StockMovementDto mapToDto(StockMovement movement) {
+        return new StockMovementDto(movement.getId(), movement.getType(), movement.getQuantity(),
+                movement.getOrderId(), movement.getCreatedAt());
+    }
+}
@@ -2,19 +2,23 @@
 package com.ecommerce.service;
 
 import com.ecommerce.dto.*;
+import com.ecommerce.event.OrderPlacedEvent;
 import com.ecommerce.exception.ResourceNotFoundException;
 import com.ecommerce.model.*;
-import com.ecommerce.repository.CartRepository;
 import com.ecommerce.repository.OrderRepository;
 import com.ecommerce.repository.ProductRepository;
 import com.ecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,53 +27,157 @@ public class OrderService {
 
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
-    private final CartRepository cartRepository;
     private final ProductRepository productRepository;
     private final CartService cartService;
     private final PaymentService paymentService;
+    private final InventoryService inventoryService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public List<OrderDto> getUserOrders(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-        
-        return orderRepository.findByUserOrderByOrderDateDesc(user).stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+    public List<OrderDto> getUserOrders(String username, FieldSelection fields) {
+        return assemble(orderRepository.findSummariesByUsername(username), fields);
     }
 
-    public OrderDto getOrderById(Long id, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-        
-        Order order = orderRepository.findById(id)
+    public OrderDto getOrderById(Long id, String username, FieldSelection fields) {
+        OrderRepository.OrderSummary order = orderRepository.findSummaryById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Order", "id", id));
         
         // Security check to ensure the order belongs to the user
-        if (!order.getUser().getId().equals(user.getId())) {
+        if (!order.getUsername().equals(username)) {
             throw new RuntimeException("Not authorized to access this order");
         }
         
-        return mapToDto(order);
+        return assemble(List.of(order), fields).get(0);
+    }
+
+    // Items and payments are loaded with one query each for all orders, and skipped when not requested
+    private List<OrderDto> assemble(List<OrderRepository.OrderSummary> orders, FieldSelection fields) {
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        List<Long> orderIds = orders.stream().map(OrderRepository.OrderSummary::getId).collect(Collectors.toList());
+
+        Map<Long, List<OrderItemDto>> itemsByOrder = new HashMap<>();
+        if (fields.includes("items")) {
+            for (OrderRepository.OrderItemRow row : orderRepository.findItemRowsByOrderIdIn(orderIds)) {
+                BigDecimal subtotal = row.getPriceAtPurchase().multiply(new BigDecimal(row.getQuantity()));
+                itemsByOrder.computeIfAbsent(row.getOrderId(), key -> new ArrayList<>()).add(new OrderItemDto(
+                        row.getId(), row.getProductId(), row.getProductName(), row.getQuantity(),
+                        row.getPriceAtPurchase(), subtotal));
+            }
+        }
+
+        Map<Long, PaymentDto> paymentsByOrder = new HashMap<>();
+        if (fields.includes("payment")) {
+            for (OrderRepository.PaymentRow row : orderRepository.findPaymentRowsByOrderIdIn(orderIds)) {
+                paymentsByOrder.put(row.getOrderId(), new PaymentDto(row.getId(), row.getPaymentDate(),
+                        row.getPaymentMethod(), row.getAmount(), row.getTransactionId(), row.getStatus()));
+            }
+        }
+
+        List<OrderDto> orderDtos = new ArrayList<>(orders.size());
+        for (OrderRepository.OrderSummary order : orders) {
+            OrderDto orderDto = new OrderDto();
+            orderDto.setId(order.getId());
+            orderDto.setTotalPrice(order.getTotalPrice());
+            orderDto.setOrderDate(order.getOrderDate());
+            orderDto.setStatus(order.getStatus());
+            if (fields.includes("shippingAddress") && order.getShippingAddress() != null) {
+                orderDto.setShippingAddress(mapToDto(order.getShippingAddress()));
+            }
+            if (fields.includes("items")) {
+                orderDto.setItems(itemsByOrder.getOrDefault(order.getId(), new ArrayList<>()));
+            }
+            orderDto.setPayment(paymentsByOrder.get(order.getId()));
+            orderDtos.add(orderDto);
+        }
+        return orderDtos;
     }
 
     @Transactional
     public OrderDto createOrder(String username, CreateOrderRequest orderRequest) {
+        Order savedOrder = placeOrder(username, orderRequest);
+        
+        // Process payment
+        Payment payment = paymentService.processPayment(savedOrder, orderRequest.getPaymentInfo());
+        savedOrder.setPayment(payment);
+        
+        // Update order status based on payment status
+        if (payment.getStatus() == Payment.PaymentStatus.COMPLETED) {
+            savedOrder.setStatus(Order.OrderStatus.PROCESSING);
+        }
+        
+        // Save the order again with payment info
+        savedOrder = orderRepository.save(savedOrder);
+        
+        return mapToDto(savedOrder);
+    }
+
+    // First half of an asynchronous checkout: the order is accepted with its stock taken, and stays PENDING until
+    // completePendingOrder records the payment
+    @Transactional
+    public OrderDto placePendingOrder(String username, CreateOrderRequest orderRequest) {
+        return mapToDto(placeOrder(username, orderRequest));
+    }
+
+    // Locks the order row, so a cancellation racing the payment either happens before it or sees its outcome
+    @Transactional
+    public OrderDto completePendingOrder(Long orderId, Payment payment) {
+        Order order = orderRepository.findForUpdateById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+        
+        Payment savedPayment = paymentService.recordPayment(order, payment);
+        order.setPayment(savedPayment);
+        
+        if (order.getStatus() != Order.OrderStatus.PENDING) {
+            // Cancelled while the payment was in flight; its stock has already been released
+            if (savedPayment.getStatus() == Payment.PaymentStatus.COMPLETED) {
+                order.setPayment(paymentService.refundPayment(savedPayment.getId()));
+            }
+        } else if (savedPayment.getStatus() == Payment.PaymentStatus.COMPLETED) {
+            order.setStatus(Order.OrderStatus.PROCESSING);
+        } else {
+            // A declined payment gives the stock back instead of holding it for an order nobody pays for
+            releaseStock(order);
+            order.setStatus(Order.OrderStatus.CANCELLED);
+        }
+        
+        return mapToDto(orderRepository.save(order));
+    }
+
+    // Pending orders whose payment never arrived, for example because the node restarted with them queued
+    public List<Long> getUnpaidOrderIds(LocalDateTime placedBefore) {
+        return orderRepository.findUnpaidOrderIds(Order.OrderStatus.PENDING, placedBefore);
+    }
+
+    @Transactional
+    public boolean abandonUnpaidOrder(Long orderId) {
+        Order order = orderRepository.findForUpdateById(orderId).orElse(null);
+        if (order == null || order.getStatus() != Order.OrderStatus.PENDING || order.getPayment() != null) {
+            return false;
+        }
+        releaseStock(order);
+        order.setStatus(Order.OrderStatus.CANCELLED);
+        orderRepository.save(order);
+        return true;
+    }
+
+    // Builds and saves the order from the user's cart and takes its stock; the ordered lines leave the cart once this commits
+    private Order placeOrder(String username, CreateOrderRequest orderRequest) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
         
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart", "user", username));
-        
-        if (cart.getItems().isEmpty()) {
+        Map<Long, Integer> cartQuantities = cartService.getCartQuantities(username);
+        if (cartQuantities.isEmpty()) {
             throw new RuntimeException("Cannot create order with empty cart");
         }
+        Map<Long, Product> products = productRepository.findAllById(cartQuantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
 
         // Create new order
         Order order = new Order();
         order.setUser(user);
         order.setOrderDate(LocalDateTime.now());
         order.setStatus(Order.OrderStatus.PENDING);
-        order.setTotalPrice(cart.getTotalPrice());
         
         // Set shipping address
         ShippingAddress shippingAddress = new ShippingAddress();
@@ -82,43 +190,34 @@ public class OrderService {
         shippingAddress.setPhoneNumber(orderRequest.getShippingAddress().getPhoneNumber());
         order.setShippingAddress(shippingAddress);
         
-        // Create order items from cart items
-        for (CartItem cartItem : cart.getItems()) {
+        // Create order items from cart items, priced at the current catalog price
+        BigDecimal totalPrice = BigDecimal.ZERO;
+        for (Map.Entry<Long, Integer> cartLine : cartQuantities.entrySet()) {
+            Product product = products.get(cartLine.getKey());
+            if (product == null) {
+                throw new ResourceNotFoundException("Product", "id", cartLine.getKey());
+            }
+            int quantity = cartLine.getValue();
             OrderItem orderItem = new OrderItem();
             orderItem.setOrder(order);
-            orderItem.setProduct(cartItem.getProduct());
-            orderItem.setQuantity(cartItem.getQuantity());
-            orderItem.setPriceAtPurchase(cartItem.getProduct().getPrice());
+            orderItem.setProduct(product);
+            orderItem.setQuantity(quantity);
+            orderItem.setPriceAtPurchase(product.getPrice());
             order.getItems().add(orderItem);
-            
-            // Update stock
-            Product product = cartItem.getProduct();
-            if (product.getStockQuantity() < cartItem.getQuantity()) {
-                throw new RuntimeException("Not enough stock for product: " + product.getName());
-            }
-            product.setStockQuantity(product.getStockQuantity() - cartItem.getQuantity());
-            productRepository.save(product);
+            totalPrice = totalPrice.add(product.getPrice().multiply(new BigDecimal(quantity)));
         }
+        order.setTotalPrice(totalPrice);
         
         // Save the order first to get an ID
         Order savedOrder = orderRepository.save(order);
         
-        // Process payment
-        Payment payment = paymentService.processPayment(savedOrder, orderRequest.getPaymentInfo());
-        savedOrder.setPayment(payment);
-        
-        // Update order status based on payment status
-        if (payment.getStatus() == Payment.PaymentStatus.COMPLETED) {
-            savedOrder.setStatus(Order.OrderStatus.PROCESSING);
-        }
+        // Take the stock; a shortfall rolls back the whole order
+        inventoryService.reserve(cartQuantities, savedOrder.getId());
         
-        // Save the order again with payment info
-        savedOrder = orderRepository.save(savedOrder);
+        // Take the ordered lines out of the cart once the order commits
+        eventPublisher.publishEvent(new OrderPlacedEvent(savedOrder.getId(), username, cartQuantities));
         
-        // Clear the cart
-        cartService.clearCart(username);
-        
-        return mapToDto(savedOrder);
+        return savedOrder;
     }
 
     @Transactional
@@ -137,7 +236,7 @@ public class OrderService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
         
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findForUpdateById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
         
         // Security check to ensure the order belongs to the user
@@ -152,11 +251,7 @@ public class OrderService {
         }
         
         // Restore stock
-        for (OrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-            productRepository.save(product);
-        }
+        releaseStock(order);
         
         // Cancel any associated payment
         if (order.getPayment() != null && 
@@ -169,6 +264,14 @@ public class OrderService {
         orderRepository.save(order);
     }
 
+    private void releaseStock(Order order) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItem item : order.getItems()) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        inventoryService.release(quantities, order.getId());
+    }
+
     private OrderDto mapToDto(Order order) {
         OrderDto orderDto = new OrderDto();
         orderDto.setId(order.getId());
@@ -177,16 +280,7 @@ public class OrderService {
         orderDto.setStatus(order.getStatus());
         
         if (order.getShippingAddress() != null) {
-            ShippingAddressDto addressDto = new ShippingAddressDto(
-                order.getShippingAddress().getAddressLine1(),
-                order.getShippingAddress().getAddressLine2(),
-                order.getShippingAddress().getCity(),
-                order.getShippingAddress().getState(),
-                order.getShippingAddress().getPostalCode(),
-                order.getShippingAddress().getCountry(),
-                order.getShippingAddress().getPhoneNumber()
-            );
-            orderDto.setShippingAddress(addressDto);
+            orderDto.setShippingAddress(mapToDto(order.getShippingAddress()));
         }
         
         if (order.getPayment() != null) {
@@ -209,6 +303,18 @@ public class OrderService {
         return orderDto;
     }
 
+    private ShippingAddressDto mapToDto(ShippingAddress address) {
+        return new ShippingAddressDto(
+            address.getAddressLine1(),
+            address.getAddressLine2(),
+            address.getCity(),
+            address.getState(),
+            address.getPostalCode(),
+            address.getCountry(),
+            address.getPhoneNumber()
+        );
+    }
+
     private OrderItemDto mapToDto(OrderItem item) {
         OrderItemDto dto = new OrderItemDto();
         dto.setId(item.getId());
@@ -10,6 +10,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -21,11 +22,15 @@ public class PaymentService {
 
     @Transactional
     public Payment processPayment(Order order, PaymentInfoDto paymentInfo) {
+        return recordPayment(order, authorize(order.getTotalPrice(), paymentInfo));
+    }
+
+    // Talks to the provider only, so callers can keep it outside a transaction
+    public Payment authorize(BigDecimal amount, PaymentInfoDto paymentInfo) {
         Payment payment = new Payment();
-        payment.setOrder(order);
         payment.setPaymentDate(LocalDateTime.now());
         payment.setPaymentMethod(paymentInfo.getPaymentMethod());
-        payment.setAmount(order.getTotalPrice());
+        payment.setAmount(amount);
         payment.setTransactionId(generateTransactionId());
         
         // Simulate payment processing
@@ -37,6 +42,12 @@ public class PaymentService {
             payment.setStatus(Payment.PaymentStatus.FAILED);
         }
         
+        return payment;
+    }
+
+    @Transactional
+    public Payment recordPayment(Order order, Payment payment) {
+        payment.setOrder(order);
         return paymentRepository.save(payment);
     }
 
@@ -56,6 +67,14 @@ public class PaymentService {
         }
     }
 
+    // Reverses an authorization that was never recorded, so there is no payment row to refund
+    public void voidAuthorization(Payment payment) {
+        if (!processRefundWithProvider(payment)) {
+            throw new RuntimeException("Failed to void payment " + payment.getTransactionId());
+        }
+        payment.setStatus(Payment.PaymentStatus.REFUNDED);
+    }
+
     private String generateTransactionId() {
         return "TXN-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
     }
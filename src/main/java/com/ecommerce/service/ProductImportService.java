@@ -0,0 +1,265 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductDto;
+import com.ecommerce.dto.ProductImportErrorDto;
+import com.ecommerce.dto.ProductImportResultDto;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.exception.BadRequestException;
+import com.ecommerce.model.Category;
+import com.ecommerce.repository.CategoryRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Slf4j
+public class ProductImportService {
+
+    public static final String FORMAT_NDJSON = "ndjson";
+    public static final String FORMAT_CSV = "csv";
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final List<String> CSV_COLUMNS =
+            List.of("name", "description", "price", "stockQuantity", "imageUrl", "categoryId");
+
+    // Ids are drawn from the identity column's own sequence, one round trip per chunk
+    private static final String ALLOCATE_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('products', 'id')) FROM generate_series(1, ?)";
+    private static final String INSERT_SQL = "INSERT INTO products "
+            + "(id, name, description, price, stock_quantity, image_url, category_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final CategoryRepository categoryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public ProductImportService(
+            CategoryRepository categoryRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ApplicationEventPublisher eventPublisher,
+            ObjectMapper objectMapper,
+            @Value("${catalog.import.batch-size:1000}") int batchSize) {
+        this.categoryRepository = categoryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    public ProductImportResultDto importProducts(InputStream body, String format) {
+        if (!FORMAT_NDJSON.equals(format) && !FORMAT_CSV.equals(format)) {
+            throw new BadRequestException("Unsupported import format: " + format);
+        }
+        Map<Long, String> categoryNames = new HashMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            categoryNames.put(category.getId(), category.getName());
+        }
+
+        ImportRun run = new ImportRun();
+        List<Row> chunk = new ArrayList<>(batchSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            List<String> header = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (FORMAT_CSV.equals(format) && header == null) {
+                    header = parseCsvHeader(line);
+                    continue;
+                }
+
+                ProductDto product;
+                try {
+                    product = FORMAT_CSV.equals(format) ? parseCsvRow(header, line) : parseJsonRow(line);
+                    validate(product, categoryNames);
+                } catch (IllegalArgumentException e) {
+                    run.fail(lineNumber, e.getMessage());
+                    continue;
+                }
+                product.setCategoryName(categoryNames.get(product.getCategoryId()));
+                chunk.add(new Row(lineNumber, product));
+                if (chunk.size() == batchSize) {
+                    writeChunk(chunk, run);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, run);
+        }
+
+        log.info("Product import finished: {} imported, {} failed", run.imported, run.failed);
+        return new ProductImportResultDto(run.imported, run.failed, run.errors, run.errorsTruncated);
+    }
+
+    // Each chunk commits on its own, so a failing chunk does not roll back the rows imported before it
+    private void writeChunk(List<Row> chunk, ImportRun run) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Long> ids = jdbcTemplate.queryForList(ALLOCATE_IDS_SQL, Long.class, chunk.size());
+                List<Object[]> parameters = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    ProductDto product = chunk.get(i).product;
+                    product.setId(ids.get(i));
+                    parameters.add(new Object[]{product.getId(), product.getName(), product.getDescription(),
+                            product.getPrice(), product.getStockQuantity(), product.getImageUrl(),
+                            product.getCategoryId()});
+                }
+                jdbcTemplate.batchUpdate(INSERT_SQL, parameters);
+                // Delivered to the caches and indexes once the chunk commits
+                chunk.forEach(row -> eventPublisher.publishEvent(ProductChangedEvent.created(row.product)));
+            });
+            run.imported += chunk.size();
+        } catch (RuntimeException e) {
+            log.warn("Product import chunk starting at line {} failed", chunk.get(0).line, e);
+            for (Row row : chunk) {
+                run.fail(row.line, "Batch insert failed: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            }
+        }
+    }
+
+    private ProductDto parseJsonRow(String line) {
+        try {
+            ProductDto product = objectMapper.readValue(line, ProductDto.class);
+            product.setId(null);
+            return product;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private List<String> parseCsvHeader(String line) {
+        List<String> header = new ArrayList<>();
+        for (String column : parseCsvLine(line)) {
+            header.add(column.trim());
+        }
+        if (!header.containsAll(List.of("name", "price", "stockQuantity", "categoryId"))) {
+            throw new BadRequestException("CSV header must name the columns " + CSV_COLUMNS);
+        }
+        return header;
+    }
+
+    private ProductDto parseCsvRow(List<String> header, String line) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException("Expected " + header.size() + " columns but found " + values.size());
+        }
+        ProductDto product = new ProductDto();
+        for (int i = 0; i < header.size(); i++) {
+            String value = values.get(i).isEmpty() ? null : values.get(i);
+            try {
+                switch (header.get(i)) {
+                    case "name" -> product.setName(value);
+                    case "description" -> product.setDescription(value);
+                    case "price" -> product.setPrice(value == null ? null : new BigDecimal(value.trim()));
+                    case "stockQuantity" -> product.setStockQuantity(value == null ? null : Integer.valueOf(value.trim()));
+                    case "imageUrl" -> product.setImageUrl(value);
+                    case "categoryId" -> product.setCategoryId(value == null ? null : Long.valueOf(value.trim()));
+                    default -> {
+                        // Unknown columns are ignored
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number in column " + header.get(i) + ": " + value);
+            }
+        }
+        return product;
+    }
+
+    private static void validate(ProductDto product, Map<Long, String> categoryNames) {
+        if (product.getName() == null || product.getName().isBlank()) {
+            throw new IllegalArgumentException("Name is required");
+        }
+        if (product.getPrice() == null || product.getPrice().signum() < 0) {
+            throw new IllegalArgumentException("Price must be zero or positive");
+        }
+        if (product.getStockQuantity() == null || product.getStockQuantity() < 0) {
+            throw new IllegalArgumentException("Stock quantity must be zero or positive");
+        }
+        if (product.getCategoryId() == null || !categoryNames.containsKey(product.getCategoryId())) {
+            throw new IllegalArgumentException("Unknown category: " + product.getCategoryId());
+        }
+    }
+
+    // RFC 4180 style fields on a single line: commas inside double quotes, "" for a literal quote
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static final class Row {
+        private final long line;
+        private final ProductDto product;
+
+        private Row(long line, ProductDto product) {
+            this.line = line;
+            this.product = product;
+        }
+    }
+
+    private static final class ImportRun {
+        private long imported;
+        private long failed;
+        private final List<ProductImportErrorDto> errors = new ArrayList<>();
+        private boolean errorsTruncated;
+
+        private void fail(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ProductImportErrorDto(line, message));
+            } else {
+                errorsTruncated = true;
+            }
+        }
+    }
+}
@@ -1,18 +1,44 @@
 
 package com.ecommerce.service;
 
+import com.ecommerce.cache.CatalogCache;
+import com.ecommerce.dto.CursorPage;
+import com.ecommerce.dto.FieldSelection;
+import com.ecommerce.dto.ProductBatchDto;
+import com.ecommerce.dto.ProductBulkUpdateRequest;
+import com.ecommerce.dto.ProductBulkUpdateResultDto;
 import com.ecommerce.dto.ProductDto;
+import com.ecommerce.dto.ProductFacetsDto;
+import com.ecommerce.dto.ProductSuggestionDto;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.exception.BadRequestException;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.inventory.FlashSaleInventory;
+import com.ecommerce.inventory.StockLedger;
 import com.ecommerce.model.Category;
 import com.ecommerce.model.Product;
 import com.ecommerce.repository.CategoryRepository;
 import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.search.CatalogFacetIndex;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.search.ProductSuggester;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -20,29 +46,109 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggester productSuggester;
+    private final CatalogFacetIndex catalogFacetIndex;
+    private final CatalogCache catalogCache;
+    private final StockLedger stockLedger;
+    private final FlashSaleInventory flashSaleInventory;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public List<ProductDto> getAllProducts() {
-        return productRepository.findAll().stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final int MAX_BULK_UPDATE_SIZE = 100_000;
+    private static final int RELOAD_CHUNK_SIZE = 1000;
+
+    public List<ProductDto> getAllProducts(FieldSelection fields) {
+        if (fields.isAll()) {
+            return productRepository.findAllDtos();
+        }
+        return productRepository.findDtosWithFields(fields, null, null);
+    }
+
+    public CursorPage<ProductDto> getProductPage(Long after, int limit, FieldSelection fields) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // Fetch one extra row to know whether another page exists
+        List<ProductDto> items = fields.isAll()
+                ? productRepository.findDtoPageAfter(after, PageRequest.of(0, pageSize + 1))
+                : productRepository.findDtosWithFields(fields, after, pageSize + 1);
+
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = items.subList(0, pageSize);
+        }
+        Long nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllProducts(Consumer<ProductDto> consumer) {
+        // Projected rows are never attached to the persistence context, so memory stays flat
+        try (Stream<ProductDto> products = productRepository.streamAllDtos()) {
+            products.forEach(consumer);
+        }
     }
 
     public ProductDto getProductById(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
-        return mapToDto(product);
+        return catalogCache.getProduct(id, key -> productRepository.findDtoById(key)
+                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", key)));
+    }
+
+    public ProductBatchDto getProductsByIds(List<Long> ids) {
+        List<Long> requestedIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (requestedIds.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("At most " + MAX_BATCH_SIZE + " product ids can be requested at once");
+        }
+
+        Map<Long, ProductDto> productsById = catalogCache.getProducts(requestedIds,
+                misses -> productRepository.findDtosByIdIn(misses).stream()
+                        .collect(Collectors.toMap(ProductDto::getId, Function.identity())));
+
+        List<ProductDto> products = new ArrayList<>(requestedIds.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requestedIds) {
+            ProductDto product = productsById.get(id);
+            if (product != null) {
+                products.add(product);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new ProductBatchDto(products, missingIds);
     }
 
     public List<ProductDto> getProductsByCategory(Long categoryId) {
-        return productRepository.findByCategoryId(categoryId).stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return catalogCache.getProductsByCategory(categoryId, productRepository::findDtosByCategoryId);
     }
 
-    public List<ProductDto> searchProducts(String keyword) {
-        return productRepository.findByNameContainingIgnoreCase(keyword).stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+    public List<ProductDto> searchProducts(String keyword, int limit, boolean fuzzy) {
+        List<Long> rankedIds = productSearchIndex.search(keyword, Math.min(limit, MAX_PAGE_SIZE), fuzzy);
+        if (rankedIds.isEmpty()) {
+            return List.of();
+        }
+        // Hydration keeps the BM25 ranking order
+        return getProductsByIds(rankedIds).getProducts();
+    }
+
+    public ProductFacetsDto filterProducts(List<Long> categoryIds, BigDecimal minPrice, BigDecimal maxPrice,
+                                           Boolean inStock, int offset, int limit) {
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new BadRequestException("minPrice must not be greater than maxPrice");
+        }
+        int pageSize = Math.max(0, Math.min(limit, MAX_PAGE_SIZE));
+        CatalogFacetIndex.Result result = catalogFacetIndex.query(categoryIds, minPrice, maxPrice, inStock,
+                Math.max(0, offset), pageSize);
+
+        List<ProductDto> products = result.getProductIds().isEmpty()
+                ? List.of()
+                : getProductsByIds(result.getProductIds()).getProducts();
+        return new ProductFacetsDto(result.getTotal(), products, result.getCategoryCounts(),
+                result.getInStockCount(), result.getOutOfStockCount(), result.getPriceRanges());
+    }
+
+    public List<ProductSuggestionDto> suggestProducts(String prefix, int limit) {
+        return productSuggester.suggest(prefix, Math.max(0, limit));
     }
 
     @Transactional
@@ -59,13 +165,16 @@ public class ProductService {
         product.setCategory(category);
 
         Product savedProduct = productRepository.save(product);
-        return mapToDto(savedProduct);
+        ProductDto savedDto = mapToDto(savedProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.created(savedDto));
+        return savedDto;
     }
 
     @Transactional
     public ProductDto updateProduct(Long id, ProductDto productDto) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
+        Long previousCategoryId = product.getCategory() != null ? product.getCategory().getId() : null;
 
         Category category = null;
         if (productDto.getCategoryId() != null) {
@@ -76,6 +185,12 @@ public class ProductService {
         product.setName(productDto.getName());
         product.setDescription(productDto.getDescription());
         product.setPrice(productDto.getPrice());
+        // The ledger holds the live level, not the synced column; a changed quantity is recorded there as an adjustment
+        if (productDto.getStockQuantity() != null
+                && productDto.getStockQuantity() != stockLedger.available(id)) {
+            flashSaleInventory.checkNotOnSale(List.of(id));
+            stockLedger.adjust(Map.of(id, productDto.getStockQuantity()));
+        }
         product.setStockQuantity(productDto.getStockQuantity());
         product.setImageUrl(productDto.getImageUrl());
         if (category != null) {
@@ -83,14 +198,78 @@ public class ProductService {
         }
 
         Product updatedProduct = productRepository.save(product);
-        return mapToDto(updatedProduct);
+        ProductDto updatedDto = mapToDto(updatedProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.updated(updatedDto, previousCategoryId));
+        return updatedDto;
+    }
+
+    @Transactional
+    public ProductBulkUpdateResultDto bulkUpdateProducts(List<ProductBulkUpdateRequest.Item> updates) {
+        if (updates.size() > MAX_BULK_UPDATE_SIZE) {
+            throw new BadRequestException("At most " + MAX_BULK_UPDATE_SIZE + " products can be updated at once");
+        }
+        // A product listed twice is merged, later values winning field by field
+        Map<Long, ProductBulkUpdateRequest.Item> updatesById = new LinkedHashMap<>();
+        for (ProductBulkUpdateRequest.Item update : updates) {
+            if (update.getPrice() == null && update.getStockQuantity() == null) {
+                throw new BadRequestException("Update for product " + update.getProductId()
+                        + " sets neither price nor stockQuantity");
+            }
+            updatesById.merge(update.getProductId(), update, (earlier, later) -> {
+                ProductBulkUpdateRequest.Item merged = new ProductBulkUpdateRequest.Item();
+                merged.setProductId(later.getProductId());
+                merged.setPrice(later.getPrice() != null ? later.getPrice() : earlier.getPrice());
+                merged.setStockQuantity(later.getStockQuantity() != null
+                        ? later.getStockQuantity() : earlier.getStockQuantity());
+                return merged;
+            });
+        }
+
+        List<ProductBulkUpdateRequest.Item> distinctUpdates = new ArrayList<>(updatesById.values());
+        List<Long> stockUpdateIds = distinctUpdates.stream()
+                .filter(update -> update.getStockQuantity() != null)
+                .map(ProductBulkUpdateRequest.Item::getProductId)
+                .toList();
+        flashSaleInventory.checkNotOnSale(stockUpdateIds);
+        // Loaded before the UPDATE writes the column, so the adjustments below are taken from the committed level
+        stockLedger.load(stockUpdateIds);
+        int[] matched = productRepository.updatePricesAndStock(distinctUpdates);
+
+        List<Long> updatedIds = new ArrayList<>(distinctUpdates.size());
+        List<Long> missingIds = new ArrayList<>();
+        Map<Long, Integer> stockQuantities = new HashMap<>();
+        for (int i = 0; i < distinctUpdates.size(); i++) {
+            ProductBulkUpdateRequest.Item update = distinctUpdates.get(i);
+            if (matched[i] == 0) {
+                missingIds.add(update.getProductId());
+                continue;
+            }
+            updatedIds.add(update.getProductId());
+            if (update.getStockQuantity() != null) {
+                stockQuantities.put(update.getProductId(), update.getStockQuantity());
+            }
+        }
+        if (!stockQuantities.isEmpty()) {
+            stockLedger.adjust(stockQuantities);
+        }
+
+        // Reloaded in chunks so the listeners get the new state; they run once the transaction commits
+        for (int from = 0; from < updatedIds.size(); from += RELOAD_CHUNK_SIZE) {
+            List<Long> chunk = updatedIds.subList(from, Math.min(from + RELOAD_CHUNK_SIZE, updatedIds.size()));
+            for (ProductDto product : productRepository.findDtosByIdIn(chunk)) {
+                eventPublisher.publishEvent(ProductChangedEvent.updated(product, product.getCategoryId()));
+            }
+        }
+        return new ProductBulkUpdateResultDto(distinctUpdates.size(), updatedIds.size(), missingIds);
     }
 
     @Transactional
     public void deleteProduct(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
         productRepository.delete(product);
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(id, categoryId));
     }
 
     private ProductDto mapToDto(Product product) {
@@ -0,0 +1,232 @@
+package com.ecommerce.sync;
+
+import com.ecommerce.event.CategoryChangedEvent;
+import com.ecommerce.event.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Compacted log of catalog changes: only the latest change per entity is kept, so the log never outgrows the catalog
+// plus the tombstones still inside the retention window
+@Component
+@Slf4j
+public class CatalogChangeFeed {
+
+    private final Duration tombstoneRetention;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<Long, Change> changesByVersion = new TreeMap<>();
+    private final Map<EntityType, Map<Long, Long>> versionsByEntity = new EnumMap<>(EntityType.class);
+    private final Map<EntityType, Long> latestVersions = new EnumMap<>(EntityType.class);
+
+    // Versions start from the startup time in microseconds so they keep increasing across restarts;
+    // anything older than the floor was recorded by a previous process or compacted away
+    private long currentVersion = System.currentTimeMillis() * 1000;
+    private long floorVersion = currentVersion;
+
+    public CatalogChangeFeed(@Value("${catalog.changes.tombstone-retention:7d}") Duration tombstoneRetention) {
+        this.tombstoneRetention = tombstoneRetention;
+        for (EntityType type : EntityType.values()) {
+            versionsByEntity.put(type, new HashMap<>());
+            latestVersions.put(type, currentVersion);
+        }
+    }
+
+    // Runs after the catalog cache is invalidated, so a reader that sees the new version never gets a stale cached body,
+    // and before the response cache purge, so a response rendered after the purge never carries the old version
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        record(EntityType.PRODUCT, event.getProductId(), event.getType() == ProductChangedEvent.ChangeType.DELETED);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            boolean deleted = event.getType() == CategoryChangedEvent.ChangeType.DELETED;
+            append(EntityType.CATEGORY, event.getCategoryId(), deleted);
+            if (!deleted) {
+                // Products embed the category name, so a rename is a change to each of them
+                for (Long productId : event.getProductIds()) {
+                    append(EntityType.PRODUCT, productId, false);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Version of a single entity's current state; entities untouched since the floor share the floor version.
+    // Returns null for a deleted entity
+    public Long version(EntityType type, Long id) {
+        lock.readLock().lock();
+        try {
+            Long version = versionsByEntity.get(type).get(id);
+            if (version == null) {
+                return floorVersion;
+            }
+            return changesByVersion.get(version).isDeleted() ? null : version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Version of the last change to any entity of the given type, used to validate list responses
+    public long latestVersion(EntityType type) {
+        lock.readLock().lock();
+        try {
+            return Math.max(latestVersions.get(type), floorVersion);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Slice changesSince(long since, int limit) {
+        lock.readLock().lock();
+        try {
+            if (since < floorVersion || since > currentVersion) {
+                return new Slice(currentVersion, true, false, List.of());
+            }
+
+            List<Change> changes = new ArrayList<>(Math.min(limit, changesByVersion.size()));
+            Iterator<Change> pending = changesByVersion.tailMap(since, false).values().iterator();
+            while (pending.hasNext() && changes.size() < limit) {
+                changes.add(pending.next());
+            }
+            boolean hasMore = pending.hasNext();
+            long version = hasMore ? changes.get(changes.size() - 1).getVersion() : currentVersion;
+            return new Slice(version, false, hasMore, changes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.changes.prune-interval-ms:3600000}")
+    public void pruneTombstones() {
+        long cutoff = System.currentTimeMillis() - tombstoneRetention.toMillis();
+        lock.writeLock().lock();
+        try {
+            int pruned = 0;
+            Iterator<Change> changes = changesByVersion.values().iterator();
+            while (changes.hasNext()) {
+                Change change = changes.next();
+                if (change.isDeleted() && change.recordedAt < cutoff) {
+                    changes.remove();
+                    versionsByEntity.get(change.getType()).remove(change.getId());
+                    // Clients behind a forgotten delete can no longer catch up incrementally
+                    floorVersion = Math.max(floorVersion, change.getVersion());
+                    pruned++;
+                }
+            }
+            if (pruned > 0) {
+                log.info("Pruned {} catalog tombstones, change feed floor is now {}", pruned, floorVersion);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void record(EntityType type, Long id, boolean deleted) {
+        lock.writeLock().lock();
+        try {
+            append(type, id, deleted);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(EntityType type, Long id, boolean deleted) {
+        long version = ++currentVersion;
+        Long previous = versionsByEntity.get(type).put(id, version);
+        if (previous != null) {
+            changesByVersion.remove(previous);
+        }
+        latestVersions.put(type, version);
+        changesByVersion.put(version, new Change(type, id, deleted, version, System.currentTimeMillis()));
+    }
+
+    public enum EntityType {
+        PRODUCT,
+        CATEGORY
+    }
+
+    public static final class Change {
+        private final EntityType type;
+        private final Long id;
+        private final boolean deleted;
+        private final long version;
+        private final long recordedAt;
+
+        private Change(EntityType type, Long id, boolean deleted, long version, long recordedAt) {
+            this.type = type;
+            this.id = id;
+            this.deleted = deleted;
+            this.version = version;
+            this.recordedAt = recordedAt;
+        }
+
+        public EntityType getType() {
+            return type;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public boolean isDeleted() {
+            return deleted;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    public static final class Slice {
+        private final long version;
+        private final boolean resetRequired;
+        private final boolean hasMore;
+        private final List<Change> changes;
+
+        private Slice(long version, boolean resetRequired, boolean hasMore, List<Change> changes) {
+            this.version = version;
+            this.resetRequired = resetRequired;
+            this.hasMore = hasMore;
+            this.changes = changes;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public boolean isResetRequired() {
+            return resetRequired;
+        }
+
+        public boolean isHasMore() {
+            return hasMore;
+        }
+
+        public List<Change> getChanges() {
+            return changes;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.ecommerce.config;
+
+import com.ecommerce.dto.ProductDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Payload size and encode/decode throughput of a product page as CBOR against JSON, with the mappers built the way
+// WebConfig builds them
+@Slf4j
+class CborEncodingTest {
+
+    private static final int PRODUCTS = 500;
+    private static final long MEASURE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final TypeReference<List<ProductDto>> PRODUCT_LIST = new TypeReference<>() {
+    };
+
+    private final WebConfig webConfig = new WebConfig();
+    private final ObjectMapper json = builder().build();
+    private final ObjectMapper cbor = webConfig.cborHttpMessageConverter(builder()).getObjectMapper();
+
+    @Test
+    void cborPageIsSmallerAndRoundTrips() throws Exception {
+        List<ProductDto> products = products();
+
+        byte[] jsonBytes = json.writeValueAsBytes(products);
+        byte[] cborBytes = cbor.writeValueAsBytes(products);
+        log.info("{} products: {} bytes as JSON, {} as CBOR ({}%)", PRODUCTS, jsonBytes.length, cborBytes.length,
+                cborBytes.length * 100 / jsonBytes.length);
+
+        assertThat(cborBytes.length).isLessThan(jsonBytes.length);
+        List<ProductDto> decoded = cbor.readValue(cborBytes, PRODUCT_LIST);
+        assertThat(decoded).isEqualTo(products);
+        assertThat(json.readValue(jsonBytes, PRODUCT_LIST)).isEqualTo(decoded);
+    }
+
+    @Test
+    void encodeAndDecodeThroughput() throws Exception {
+        List<ProductDto> products = products();
+        byte[] jsonBytes = json.writeValueAsBytes(products);
+        byte[] cborBytes = cbor.writeValueAsBytes(products);
+
+        // Warmed up first, so both formats are measured with compiled code
+        for (int i = 0; i < 2; i++) {
+            pagesPerSecond(() -> json.writeValueAsBytes(products));
+            pagesPerSecond(() -> cbor.writeValueAsBytes(products));
+            pagesPerSecond(() -> json.readValue(jsonBytes, PRODUCT_LIST));
+            pagesPerSecond(() -> cbor.readValue(cborBytes, PRODUCT_LIST));
+        }
+        double jsonEncode = pagesPerSecond(() -> json.writeValueAsBytes(products));
+        double cborEncode = pagesPerSecond(() -> cbor.writeValueAsBytes(products));
+        double jsonDecode = pagesPerSecond(() -> json.readValue(jsonBytes, PRODUCT_LIST));
+        double cborDecode = pagesPerSecond(() -> cbor.readValue(cborBytes, PRODUCT_LIST));
+        log.info("Pages of {} products per second: encode JSON {} / CBOR {} ({}x), decode JSON {} / CBOR {} ({}x)",
+                PRODUCTS, (long) jsonEncode, (long) cborEncode, String.format("%.2f", cborEncode / jsonEncode),
+                (long) jsonDecode, (long) cborDecode, String.format("%.2f", cborDecode / jsonDecode));
+
+        assertThat(cborEncode).isPositive();
+        assertThat(cborDecode).isPositive();
+    }
+
+    private static Jackson2ObjectMapperBuilder builder() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        new WebConfig().fieldFilterCustomizer().customize(builder);
+        return builder;
+    }
+
+    private static double pagesPerSecond(Codec codec) throws Exception {
+        long pages = 0;
+        long began = System.nanoTime();
+        long elapsed;
+        do {
+            codec.run();
+            pages++;
+            elapsed = System.nanoTime() - began;
+        } while (elapsed < MEASURE_NANOS);
+        return pages * 1_000_000_000.0 / elapsed;
+    }
+
+    private static List<ProductDto> products() {
+        List<ProductDto> products = new ArrayList<>(PRODUCTS);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            products.add(new ProductDto(id, "Product " + id, "Description of product " + id,
+                    new BigDecimal("19.99").add(BigDecimal.valueOf(id)), (int) (id % 200),
+                    "https://example.com/images/" + id + ".jpg", id % 12 + 1, "Category " + (id % 12 + 1)));
+        }
+        return products;
+    }
+
+    @FunctionalInterface
+    private interface Codec {
+        void run() throws Exception;
+    }
+}
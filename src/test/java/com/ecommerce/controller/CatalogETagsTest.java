@@ -0,0 +1,73 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class CatalogETagsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void qualityValuesDecideTheEncoding() {
+        assertThat(CatalogETags.prefersCbor(null)).isFalse();
+        assertThat(CatalogETags.prefersCbor("application/cbor")).isTrue();
+        assertThat(CatalogETags.prefersCbor("application/cbor;q=0")).isFalse();
+        assertThat(CatalogETags.prefersCbor("application/cbor;q=0, application/json")).isFalse();
+        assertThat(CatalogETags.prefersCbor("application/json, application/cbor;q=0.5")).isFalse();
+        assertThat(CatalogETags.prefersCbor("application/json;q=0.5, application/cbor")).isTrue();
+        assertThat(CatalogETags.prefersCbor("application/cbor, */*")).isTrue();
+        assertThat(CatalogETags.prefersCbor("not a media type")).isFalse();
+    }
+
+    // The tag has to name the encoding the converters actually picked
+    @Test
+    void eTagFollowsNegotiatedContentType() throws Exception {
+        Long productId = createProduct();
+        String[] accepts = {
+                "application/json",
+                "application/cbor",
+                "application/cbor;q=0, application/json",
+                "application/json;q=0.5, application/cbor",
+                "application/json, application/cbor",
+                "application/cbor, application/json",
+                "application/cbor, */*"};
+
+        for (String accept : accepts) {
+            MockHttpServletResponse response = mockMvc.perform(get("/api/products/" + productId)
+                    .header(HttpHeaders.ACCEPT, accept)).andReturn().getResponse();
+
+            boolean cbor = MediaType.APPLICATION_CBOR.isCompatibleWith(MediaType.parseMediaType(response.getContentType()));
+            assertThat(response.getHeader(HttpHeaders.ETAG).contains("-cbor")).as(accept).isEqualTo(cbor);
+            assertThat(response.getHeaders(HttpHeaders.VARY)).as(accept).contains(HttpHeaders.ACCEPT);
+        }
+    }
+
+    private Long createProduct() {
+        Product product = new Product();
+        product.setName("ETag test product");
+        product.setPrice(new BigDecimal("4.50"));
+        product.setStockQuantity(3);
+        return productRepository.save(product).getId();
+    }
+}
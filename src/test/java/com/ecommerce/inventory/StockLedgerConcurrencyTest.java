@@ -0,0 +1,168 @@
+package com.ecommerce.inventory;
+
+import com.ecommerce.dto.ProductBulkUpdateRequest;
+import com.ecommerce.exception.InsufficientStockException;
+import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.StockMovement;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.service.ProductService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Slf4j
+class StockLedgerConcurrencyTest {
+
+    private static final int STOCK = 200;
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentCheckoutsOnOneProductNeverOversell() throws Exception {
+        Long productId = createProduct(STOCK);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(pool.submit((Callable<Void>) () -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status ->
+                                stockLedger.reserve(Map.of(productId, 1), null));
+                        reserved.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<Void> worker : workers) {
+            worker.get(1, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - began;
+        pool.shutdown();
+
+        int attempts = THREADS * ATTEMPTS_PER_THREAD;
+        log.info("{} checkouts of one product on {} threads in {} ms ({} per second)", attempts, THREADS,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), attempts * 1_000_000_000L / elapsedNanos);
+
+        assertThat(reserved.get()).isEqualTo(STOCK);
+        assertThat(rejected.get()).isEqualTo(attempts - STOCK);
+        assertThat(stockLedger.available(productId)).isZero();
+        assertThat(recordedMovements(productId)).isEqualTo(-STOCK);
+    }
+
+    @Test
+    void failedLaterLineGivesBackEarlierLines() {
+        Long productId = createProduct(5);
+        Long missingId = productId + 1_000_000;
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status ->
+                stockLedger.reserve(Map.of(productId, 2, missingId, 1), null)))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(stockLedger.available(productId)).isEqualTo(5);
+        assertThat(recordedMovements(productId)).isZero();
+    }
+
+    @Test
+    void rolledBackReservationIsRestored() {
+        Long productId = createProduct(5);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            stockLedger.reserve(Map.of(productId, 3), null);
+            status.setRollbackOnly();
+        });
+
+        assertThat(stockLedger.available(productId)).isEqualTo(5);
+        assertThat(recordedMovements(productId)).isZero();
+    }
+
+    @Test
+    void bulkStockUpdateOfUnloadedProductRecordsAdjustment() {
+        Long productId = createProduct(5);
+        ProductBulkUpdateRequest.Item update = new ProductBulkUpdateRequest.Item();
+        update.setProductId(productId);
+        update.setStockQuantity(12);
+
+        productService.bulkUpdateProducts(List.of(update));
+
+        assertThat(stockLedger.available(productId)).isEqualTo(12);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM stock_movements WHERE product_id = ? AND movement_type = ?",
+                Integer.class, productId, StockMovement.MovementType.ADJUST.name())).isEqualTo(7);
+    }
+
+    @Test
+    void rolledBackBulkStockUpdateLeavesCommittedLevel() {
+        Long productId = createProduct(5);
+        ProductBulkUpdateRequest.Item update = new ProductBulkUpdateRequest.Item();
+        update.setProductId(productId);
+        update.setStockQuantity(12);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            productService.bulkUpdateProducts(List.of(update));
+            status.setRollbackOnly();
+        });
+
+        assertThat(stockLedger.available(productId)).isEqualTo(5);
+        assertThat(recordedMovements(productId)).isZero();
+    }
+
+    private Long createProduct(int stock) {
+        Product product = new Product();
+        product.setName("Ledger test product");
+        product.setPrice(new BigDecimal("9.99"));
+        product.setStockQuantity(stock);
+        return productRepository.save(product).getId();
+    }
+
+    private int recordedMovements(Long productId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM stock_movements WHERE product_id = ?", Integer.class, productId);
+    }
+}
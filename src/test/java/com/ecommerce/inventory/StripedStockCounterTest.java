@@ -0,0 +1,107 @@
+package com.ecommerce.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Slf4j
+class StripedStockCounterTest {
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+    private static final long MEASURE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void concurrentTakesNeverOversell() throws Exception {
+        long stock = 100_000;
+        StripedStockCounter counter = new StripedStockCounter(stock, 8);
+
+        // Three units at a time, so the last takes have to span stripes and some must fail whole
+        List<Long> taken = runConcurrently(16, () -> {
+            long units = 0;
+            while (counter.available() >= 3) {
+                if (counter.tryTake(3)) {
+                    units += 3;
+                }
+            }
+            return units;
+        });
+
+        long sold = taken.stream().mapToLong(Long::longValue).sum();
+        assertThat(sold + counter.available()).isEqualTo(stock);
+        assertThat(counter.available()).isLessThan(3);
+    }
+
+    @Test
+    void givenBackUnitsCanBeTakenAgain() {
+        StripedStockCounter counter = new StripedStockCounter(10, 4);
+
+        assertThat(counter.tryTake(10)).isTrue();
+        assertThat(counter.tryTake(1)).isFalse();
+        counter.give(4);
+
+        assertThat(counter.available()).isEqualTo(4);
+        assertThat(counter.tryTake(5)).isFalse();
+        assertThat(counter.tryTake(4)).isTrue();
+    }
+
+    @Test
+    void reservationThroughputScalesWithCores() throws Exception {
+        assumeTrue(CORES >= 4, "needs at least 4 cores to show scaling");
+
+        double single = throughput(1);
+        double parallel = throughput(CORES);
+        log.info("Striped counter: {} reservations/s on 1 thread, {} on {} threads ({}x)",
+                (long) single, (long) parallel, CORES, String.format("%.1f", parallel / single));
+
+        assertThat(parallel).isGreaterThan(single);
+    }
+
+    // Each operation takes a unit and gives it back, so the counter never runs dry during the measurement
+    private static double throughput(int threads) throws Exception {
+        StripedStockCounter counter = new StripedStockCounter(1_000_000, CORES);
+        List<Long> operations = runConcurrently(threads, () -> {
+            long count = 0;
+            long deadline = System.nanoTime() + MEASURE_NANOS;
+            while (System.nanoTime() < deadline) {
+                for (int i = 0; i < 1000; i++) {
+                    if (counter.tryTake(1)) {
+                        counter.give(1);
+                    }
+                }
+                count += 1000;
+            }
+            return count;
+        });
+        return operations.stream().mapToLong(Long::longValue).sum() * 1_000_000_000.0 / MEASURE_NANOS;
+    }
+
+    private static List<Long> runConcurrently(int threads, Callable<Long> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        List<Long> results = new ArrayList<>();
+        for (Future<Long> future : futures) {
+            results.add(future.get(1, TimeUnit.MINUTES));
+        }
+        pool.shutdown();
+        return results;
+    }
+}
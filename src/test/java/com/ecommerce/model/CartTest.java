@@ -0,0 +1,170 @@
+package com.ecommerce.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class CartTest {
+
+    private static final int LINES = 2_000;
+    private static final long MEASURE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void totalFollowsAddsUpdatesAndRemoves() {
+        List<Product> products = products(200);
+        Cart cart = new Cart();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5_000; i++) {
+            Product product = products.get(random.nextInt(products.size()));
+            switch (random.nextInt(3)) {
+                case 0 -> cart.addItem(product, 1 + random.nextInt(5));
+                case 1 -> cart.updateItemQuantity(product.getId(), 1 + random.nextInt(9));
+                default -> cart.removeItem(product.getId());
+            }
+            if (i % 100 == 0) {
+                assertTotalMatchesItems(cart);
+            }
+        }
+        assertTotalMatchesItems(cart);
+        for (CartItem item : cart.getItems()) {
+            assertThat(cart.getItem(item.getProduct().getId())).isSameAs(item);
+        }
+    }
+
+    // A cart loaded from the database gets its index, and a total at the current prices, on first use
+    @Test
+    void loadedItemsAreRepricedWhenIndexed() {
+        List<Product> products = products(3);
+        Cart loaded = new Cart();
+        List<CartItem> items = new ArrayList<>();
+        for (Product product : products) {
+            CartItem item = new CartItem();
+            item.setCart(loaded);
+            item.setProduct(product);
+            item.setQuantity(2);
+            items.add(item);
+        }
+        loaded.setItems(items);
+        loaded.setTotalPrice(new BigDecimal("1.00"));
+
+        loaded.updateItemQuantity(products.get(0).getId(), 5);
+
+        assertTotalMatchesItems(loaded);
+    }
+
+    @Test
+    void indexedUpdatesOutpaceLinearScan() {
+        List<Product> products = products(LINES);
+        Cart indexed = new Cart();
+        LinearCart linear = new LinearCart();
+        for (Product product : products) {
+            indexed.addItem(product, 1);
+            linear.addItem(product, 1);
+        }
+
+        Random random = new Random(7);
+        double indexedOps = operationsPerSecond(() -> {
+            Product product = products.get(random.nextInt(LINES));
+            indexed.updateItemQuantity(product.getId(), 1 + random.nextInt(9));
+            indexed.getItem(product.getId());
+        });
+        double linearOps = operationsPerSecond(() -> {
+            Product product = products.get(random.nextInt(LINES));
+            linear.updateItemQuantity(product.getId(), 1 + random.nextInt(9));
+            linear.getItem(product.getId());
+        });
+        log.info("Cart of {} lines: {} lookups+updates/s indexed, {} with a linear scan and full total ({}x)",
+                LINES, (long) indexedOps, (long) linearOps, (long) (indexedOps / linearOps));
+
+        assertTotalMatchesItems(indexed);
+        assertThat(indexedOps).isGreaterThan(linearOps);
+    }
+
+    private static void assertTotalMatchesItems(Cart cart) {
+        BigDecimal expected = cart.getItems().stream()
+                .map(item -> item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(cart.getTotalPrice()).isEqualByComparingTo(expected);
+    }
+
+    private static double operationsPerSecond(Runnable operation) {
+        long operations = 0;
+        long began = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 100; i++) {
+                operation.run();
+            }
+            operations += 100;
+            elapsed = System.nanoTime() - began;
+        } while (elapsed < MEASURE_NANOS);
+        return operations * 1_000_000_000.0 / elapsed;
+    }
+
+    private static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            Product product = new Product();
+            product.setId(id);
+            product.setName("Product " + id);
+            product.setPrice(new BigDecimal("0.99").add(BigDecimal.valueOf(id % 97)));
+            products.add(product);
+        }
+        return products;
+    }
+
+    // The cart before items were indexed: every lookup scans the lines and every change re-sums the total
+    private static final class LinearCart {
+        private final List<CartItem> items = new ArrayList<>();
+        private BigDecimal totalPrice = BigDecimal.ZERO;
+
+        private void addItem(Product product, int quantity) {
+            for (CartItem item : items) {
+                if (item.getProduct().getId().equals(product.getId())) {
+                    item.setQuantity(item.getQuantity() + quantity);
+                    recalculateTotal();
+                    return;
+                }
+            }
+            CartItem newItem = new CartItem();
+            newItem.setProduct(product);
+            newItem.setQuantity(quantity);
+            items.add(newItem);
+            recalculateTotal();
+        }
+
+        private void updateItemQuantity(Long productId, int quantity) {
+            items.stream()
+                    .filter(item -> item.getProduct().getId().equals(productId))
+                    .findFirst()
+                    .ifPresent(item -> {
+                        item.setQuantity(quantity);
+                        recalculateTotal();
+                    });
+        }
+
+        private CartItem getItem(Long productId) {
+            for (CartItem item : items) {
+                if (item.getProduct().getId().equals(productId)) {
+                    return item;
+                }
+            }
+            return null;
+        }
+
+        private void recalculateTotal() {
+            totalPrice = items.stream()
+                    .map(item -> item.getProduct().getPrice().multiply(new BigDecimal(item.getQuantity())))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+    }
+}
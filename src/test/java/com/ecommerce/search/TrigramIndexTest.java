@@ -0,0 +1,74 @@
+package com.ecommerce.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class TrigramIndexTest {
+
+    private static final int QUERIES = 200;
+
+    @Test
+    void correctsMisspelledTerms() {
+        TrigramIndex index = new TrigramIndex();
+        List.of("apple", "banana", "laptop", "keyboard").forEach(index::addTerm);
+
+        assertThat(terms(index.closestTerms("aple", 3))).contains("apple");
+        assertThat(terms(index.closestTerms("laptpo", 3))).containsExactly("laptop");
+        assertThat(index.closestTerms("zzzz", 3)).isEmpty();
+    }
+
+    // Every term shares "  p", " pr" and "pro" with the query, so only the scan budget keeps its cost flat
+    @Test
+    void commonTrigramCostDoesNotGrowWithVocabulary() {
+        TrigramIndex small = vocabulary(20_000);
+        TrigramIndex large = vocabulary(400_000);
+
+        for (int i = 0; i < 3; i++) {
+            averageQueryNanos(small);
+            averageQueryNanos(large);
+        }
+        long smallNanos = averageQueryNanos(small);
+        long largeNanos = averageQueryNanos(large);
+        log.info("Fuzzy lookup on a common trigram: {} us with 20000 terms, {} us with 400000",
+                smallNanos / 1000, largeNanos / 1000);
+
+        assertThat(largeNanos).isLessThan(smallNanos * 5);
+    }
+
+    // Rarest trigrams are scanned first, so a term sharing them is found however common the others are
+    @Test
+    void rareTrigramsFindTermDespiteCommonOnes() {
+        TrigramIndex index = new TrigramIndex();
+        for (int i = 0; i < 100_000; i++) {
+            index.addTerm("pro" + i);
+        }
+        index.addTerm("prowler");
+
+        assertThat(terms(index.closestTerms("prowlerr", 3))).contains("prowler");
+    }
+
+    private static TrigramIndex vocabulary(int size) {
+        TrigramIndex index = new TrigramIndex();
+        for (int i = 0; i < size; i++) {
+            index.addTerm("pro" + Integer.toString(i, 36));
+        }
+        return index;
+    }
+
+    private static long averageQueryNanos(TrigramIndex index) {
+        long began = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            index.closestTerms("proq_", 5);
+        }
+        return (System.nanoTime() - began) / QUERIES;
+    }
+
+    private static List<String> terms(List<TrigramIndex.Match> matches) {
+        return matches.stream().map(match -> match.term).toList();
+    }
+}
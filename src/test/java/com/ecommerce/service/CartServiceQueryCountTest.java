@@ -0,0 +1,128 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cart.CartStore;
+import com.ecommerce.dto.AddToCartRequest;
+import com.ecommerce.dto.CartDto;
+import com.ecommerce.model.Cart;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.User;
+import com.ecommerce.repository.CartRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.support.QueryCounter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CartServiceQueryCountTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void loadingACartTakesTheSameQueriesWhateverItsSize() {
+        String small = createUserWithCart(1);
+        String large = createUserWithCart(30);
+
+        int smallQueries = countQueries(() -> cartService.getCart(small));
+        QueryCounter.start();
+        CartDto cart = cartService.getCart(large);
+        int largeQueries = QueryCounter.stop();
+
+        assertThat(cart.getItems()).hasSize(30);
+        // The cart lines in one projection query, and their prices in one catalog batch
+        assertThat(largeQueries).isEqualTo(smallQueries).isBetween(1, 2);
+        // Served from memory once loaded
+        assertThat(countQueries(() -> cartService.getCart(large))).isZero();
+    }
+
+    @Test
+    void flushingACartTakesTheSameQueriesWhateverItsSize() {
+        String small = createUserWithCart(1);
+        String large = createUserWithCart(30);
+        cartService.getCart(small);
+        cartService.getCart(large);
+        cartStore.flush();
+
+        int smallQueries = countQueries(() -> {
+            addNewProduct(small);
+            cartStore.flush();
+        });
+        int largeQueries = countQueries(() -> {
+            addNewProduct(large);
+            cartStore.flush();
+        });
+
+        assertThat(largeQueries).isEqualTo(smallQueries).isPositive();
+        List<CartRepository.CartLineRow> stored = cartRepository.findLineRowsByUsername(large);
+        assertThat(stored).hasSize(31);
+    }
+
+    private void addNewProduct(String username) {
+        AddToCartRequest request = new AddToCartRequest();
+        request.setProductId(createProducts(1).get(0).getId());
+        request.setQuantity(2);
+        cartService.addToCart(username, request);
+    }
+
+    private String createUserWithCart(int lines) {
+        String username = "cart-" + UUID.randomUUID();
+        List<Product> products = createProducts(lines);
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = new User();
+            user.setName(username);
+            user.setUsername(username);
+            user.setEmail(username + "@example.com");
+            user.setPassword("secret");
+            Cart cart = new Cart();
+            cart.setUser(userRepository.save(user));
+            products.forEach(product -> cart.addItem(product, 1));
+            cartRepository.save(cart);
+        });
+        return username;
+    }
+
+    private List<Product> createProducts(int count) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setName("Cart test product " + i);
+            product.setPrice(new BigDecimal("4.50"));
+            product.setStockQuantity(100);
+            products.add(product);
+        }
+        return productRepository.saveAll(products);
+    }
+
+    private static int countQueries(Runnable action) {
+        QueryCounter.start();
+        action.run();
+        return QueryCounter.stop();
+    }
+}
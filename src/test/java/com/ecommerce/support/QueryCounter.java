@@ -0,0 +1,31 @@
+package com.ecommerce.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Counts the SQL statements Hibernate prepares on the current thread, so scheduled jobs running meanwhile do not
+// show up in a test's count. Registered for the test profile in application-test.yml
+public class QueryCounter implements StatementInspector {
+
+    private static final ThreadLocal<AtomicInteger> COUNT = new ThreadLocal<>();
+
+    public static void start() {
+        COUNT.set(new AtomicInteger());
+    }
+
+    public static int stop() {
+        AtomicInteger count = COUNT.get();
+        COUNT.remove();
+        return count != null ? count.get() : 0;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        AtomicInteger count = COUNT.get();
+        if (count != null) {
+            count.incrementAndGet();
+        }
+        return sql;
+    }
+}
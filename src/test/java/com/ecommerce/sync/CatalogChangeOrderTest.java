@@ -0,0 +1,73 @@
+package com.ecommerce.sync;
+
+import com.ecommerce.cache.ResponseCache;
+import com.ecommerce.event.CategoryChangedEvent;
+import com.ecommerce.event.ProductChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+// The response cache must purge only after the change feed has moved on, or a response rendered in between is cached
+// with the new body under the old ETag
+@SpringBootTest
+@ActiveProfiles("test")
+class CatalogChangeOrderTest {
+
+    private static final Long PRODUCT_ID = 424242L;
+    private static final Long CATEGORY_ID = 434343L;
+
+    @MockitoSpyBean
+    private ResponseCache responseCache;
+
+    @Autowired
+    private CatalogChangeFeed catalogChangeFeed;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void productChangeBumpsVersionBeforePurge() {
+        long before = catalogChangeFeed.version(CatalogChangeFeed.EntityType.PRODUCT, PRODUCT_ID);
+        List<Long> versionsAtPurge = new ArrayList<>();
+        doAnswer(invocation -> {
+            versionsAtPurge.add(catalogChangeFeed.version(CatalogChangeFeed.EntityType.PRODUCT, PRODUCT_ID));
+            return invocation.callRealMethod();
+        }).when(responseCache).onProductChanged(any());
+
+        transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(
+                ProductChangedEvent.stockChanged(PRODUCT_ID, CATEGORY_ID, 5)));
+
+        assertThat(versionsAtPurge).hasSize(1);
+        assertThat(versionsAtPurge.get(0)).isGreaterThan(before);
+    }
+
+    @Test
+    void categoryChangeBumpsVersionBeforePurge() {
+        long before = catalogChangeFeed.latestVersion(CatalogChangeFeed.EntityType.CATEGORY);
+        List<Long> versionsAtPurge = new ArrayList<>();
+        doAnswer(invocation -> {
+            versionsAtPurge.add(catalogChangeFeed.latestVersion(CatalogChangeFeed.EntityType.CATEGORY));
+            return invocation.callRealMethod();
+        }).when(responseCache).onCategoryChanged(any());
+
+        transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(
+                CategoryChangedEvent.updated(CATEGORY_ID, List.of(PRODUCT_ID))));
+
+        assertThat(versionsAtPurge).hasSize(1);
+        assertThat(versionsAtPurge.get(0)).isGreaterThan(before);
+    }
+}